@@ -2,8 +2,10 @@ package com.example.cashflow_monitoring;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.properties.ConfigurationPropertiesScan;
 
 @SpringBootApplication
+@ConfigurationPropertiesScan
 public class CashFlowMonitoringApplication {
     public static void main(String[] args) {
         SpringApplication.run(CashFlowMonitoringApplication.class, args);
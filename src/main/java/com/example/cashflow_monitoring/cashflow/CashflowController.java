@@ -7,7 +7,11 @@ import com.example.cashflow_monitoring.companyinfo.CompanyInfo;
 import com.example.cashflow_monitoring.companyinfo.CompanyInfoService;
 import com.example.cashflow_monitoring.countrydetail.CountryDetail;
 import com.example.cashflow_monitoring.countrydetail.CountryDetailService;
+import com.example.cashflow_monitoring.exception.BadRequestException;
 import com.example.cashflow_monitoring.exception.NotFoundException;
+import com.example.cashflow_monitoring.ingestion.IngestionScheduler;
+import com.example.cashflow_monitoring.transaction.RailRunOutcome;
+import com.example.cashflow_monitoring.transaction.Transaction;
 import com.example.cashflow_monitoring.transaction.TransactionProcessingService;
 import com.example.cashflow_monitoring.transaction.TransactionResponseDTO;
 import io.swagger.v3.oas.annotations.Operation;
@@ -16,10 +20,11 @@ import io.swagger.v3.oas.annotations.tags.Tag;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
-import reactor.util.function.Tuple4;
 
 import java.math.BigDecimal;
 import java.util.List;
@@ -36,15 +41,17 @@ public class CashflowController {
     private final CountryDetailService countryDetailService;
     private final TransactionProcessingService transactionProcessingService;
     private final CompanyMapper companyMapper;
+    private final IngestionScheduler ingestionScheduler;
 
     public CashflowController(CompanyService companyService, CompanyInfoService companyInfoService,
                               CountryDetailService countryDetailService, TransactionProcessingService transactionProcessingService,
-                              CompanyMapper companyMapper) {
+                              CompanyMapper companyMapper, IngestionScheduler ingestionScheduler) {
         this.companyService = companyService;
         this.companyInfoService = companyInfoService;
         this.countryDetailService = countryDetailService;
         this.transactionProcessingService = transactionProcessingService;
         this.companyMapper = companyMapper;
+        this.ingestionScheduler = ingestionScheduler;
     }
 
     @Operation(summary = "get all companies")
@@ -90,13 +97,32 @@ public class CashflowController {
             @Parameter(description = "Filter for transactions occurring after this starting Timestamp (ISO8601)")
             @RequestParam(name = AFTER_TIMESTAMP, required = false) String afterTimestamp,
             @Parameter(description = "Filter for transactions occurring before this ending Timestamp (ISO8601)")
-            @RequestParam(name = BEFORE_TIMESTAMP, required = false) String beforeTimestamp) {
-        return transactionProcessingService.getTransactionsWithinTimeRange(id, limit, afterTimestamp, beforeTimestamp)
+            @RequestParam(name = BEFORE_TIMESTAMP, required = false) String beforeTimestamp,
+            @Parameter(description = "Opaque token from a previous response to continue after its last transaction")
+            @RequestParam(name = CONTINUATION_TOKEN, required = false) String continuationToken) {
+        return transactionProcessingService.getTransactionsWithinTimeRange(id, limit, afterTimestamp, beforeTimestamp, continuationToken)
                 .map(this::toResponseEntity)
                 .onErrorResume(NotFoundException.class, e -> Mono.just(ResponseEntity.status(HttpStatus.NOT_FOUND).build()))
+                .onErrorResume(BadRequestException.class, e -> Mono.just(ResponseEntity.status(HttpStatus.BAD_REQUEST).build()))
                 .onErrorResume(this::handleTransactionError);
     }
 
+    @Operation(summary = "stream transactions of a company within time range as NDJSON or server-sent events")
+    @GetMapping(value = "/{id}/transactions/stream",
+            produces = {MediaType.APPLICATION_NDJSON_VALUE, MediaType.TEXT_EVENT_STREAM_VALUE})
+    public Flux<Transaction> streamTransactions(
+            @Parameter(description = "Unique identifier of the company to be retrieved") @PathVariable Integer id,
+            @Parameter(description = "Maximum number of items to stream in total") @RequestParam(required = false) Integer limit,
+            @Parameter(description = "Filter for transactions occurring after this starting Timestamp (ISO8601)")
+            @RequestParam(name = AFTER_TIMESTAMP, required = false) String afterTimestamp,
+            @Parameter(description = "Filter for transactions occurring before this ending Timestamp (ISO8601)")
+            @RequestParam(name = BEFORE_TIMESTAMP, required = false) String beforeTimestamp,
+            @Parameter(description = "Opaque token from a previous response to continue after its last transaction")
+            @RequestParam(name = CONTINUATION_TOKEN, required = false) String continuationToken) {
+        return transactionProcessingService.streamTransactionsWithinTimeRange(id, limit, afterTimestamp, beforeTimestamp,
+                continuationToken);
+    }
+
     @Operation(summary = "update the database by fetching new companies")
     @PostMapping("/update")
     public Mono<ResponseEntity<List<CompanyInfo>>> updateNewCompaniesToDb(@RequestParam(required = false) Integer limit) {
@@ -106,11 +132,22 @@ public class CashflowController {
 
     @Operation(summary = "update the database by processing new transactions")
     @PostMapping("/update/transactions")
-    public Mono<ResponseEntity<Tuple4<String, String, String, String>>>
+    public Mono<ResponseEntity<List<RailRunOutcome>>>
     processNewTransactions(@Parameter(description = "Maximum number of times to get new list of transactions")
                            @RequestParam(required = false) Integer limit) {
-        return transactionProcessingService.processNewTransactions(limit)
-                .map(this::toResponseEntity);
+        var finalLimit = limit == null || limit > 5 ? 5 : limit;
+        return ingestionScheduler.runOnce(finalLimit)
+                .map(outcomes -> ResponseEntity.status(toStatus(outcomes)).body(outcomes));
+    }
+
+    private static HttpStatus toStatus(List<RailRunOutcome> outcomes) {
+        if (outcomes.stream().anyMatch(outcome -> outcome.status() == RailRunOutcome.Status.FAILED)) {
+            return HttpStatus.INTERNAL_SERVER_ERROR;
+        }
+        if (outcomes.stream().anyMatch(outcome -> outcome.status() == RailRunOutcome.Status.SKIPPED)) {
+            return HttpStatus.CONFLICT;
+        }
+        return HttpStatus.OK;
     }
 
     private Mono<ResponseEntity<BigDecimal>> handleCompanyBalanceError(Throwable e) {
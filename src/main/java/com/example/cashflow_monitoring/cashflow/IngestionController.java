@@ -0,0 +1,46 @@
+package com.example.cashflow_monitoring.cashflow;
+
+import com.example.cashflow_monitoring.ingestion.IngestionScheduler;
+import com.example.cashflow_monitoring.ingestion.IngestionScheduler.IngestionStatus;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Mono;
+
+@RestController
+@RequestMapping("/api/v1/ingestion")
+@Tag(name = "Ingestion Management")
+public class IngestionController {
+    private final IngestionScheduler ingestionScheduler;
+
+    public IngestionController(IngestionScheduler ingestionScheduler) {
+        this.ingestionScheduler = ingestionScheduler;
+    }
+
+    @Operation(summary = "start the continuous background ingestion of new transactions")
+    @PostMapping("/start")
+    public Mono<ResponseEntity<IngestionStatus>> start() {
+        var started = ingestionScheduler.start();
+        return Mono.just(ResponseEntity.status(started ? HttpStatus.OK : HttpStatus.CONFLICT)
+                .body(ingestionScheduler.getStatus()));
+    }
+
+    @Operation(summary = "stop the continuous background ingestion of new transactions")
+    @PostMapping("/stop")
+    public Mono<ResponseEntity<IngestionStatus>> stop() {
+        var stopped = ingestionScheduler.stop();
+        return Mono.just(ResponseEntity.status(stopped ? HttpStatus.OK : HttpStatus.CONFLICT)
+                .body(ingestionScheduler.getStatus()));
+    }
+
+    @Operation(summary = "get the status of the background ingestion per rail")
+    @GetMapping("/status")
+    public Mono<ResponseEntity<IngestionStatus>> getStatus() {
+        return Mono.just(ResponseEntity.ok(ingestionScheduler.getStatus()));
+    }
+}
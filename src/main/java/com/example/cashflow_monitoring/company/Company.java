@@ -1,9 +1,13 @@
 package com.example.cashflow_monitoring.company;
 
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
 import java.util.List;
 
+@Document(collection = "companies")
 public record Company(
-        Integer id,
+        @Id Integer id,
         List<String> ibans,
         String name,
         String address
@@ -1,9 +1,20 @@
 package com.example.cashflow_monitoring.company;
 
+import com.example.cashflow_monitoring.config.ConcurrencyLimiters;
+import com.example.cashflow_monitoring.config.UpstreamConnectionPools;
+import com.example.cashflow_monitoring.config.UpstreamHttpProperties.Endpoint;
 import com.example.cashflow_monitoring.exception.BadRequestException;
 import com.example.cashflow_monitoring.exception.InternalServerErrorException;
 import com.example.cashflow_monitoring.exception.NotFoundException;
+import com.example.cashflow_monitoring.util.AdaptiveConcurrencyLimiter;
+import com.example.cashflow_monitoring.util.CircuitBreaker;
+import com.example.cashflow_monitoring.util.Fetched;
+import com.example.cashflow_monitoring.util.SingleFlight;
 import com.example.cashflow_monitoring.util.UrlBuilderUtils;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
 import jakarta.annotation.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -14,6 +25,7 @@ import org.springframework.web.reactive.function.client.ExchangeStrategies;
 import org.springframework.web.reactive.function.client.WebClient;
 import reactor.core.publisher.Mono;
 
+import java.time.Duration;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
@@ -26,18 +38,53 @@ public class CompanyClient {
 
     private final WebClient webClient;
     private final UrlBuilderUtils urlBuilderUtils;
+    private final SingleFlight<String, List<CompanyDTO>> companiesSingleFlight;
+    private final SingleFlight<Integer, CompanyDTO> companySingleFlight;
+    private final AdaptiveConcurrencyLimiter concurrencyLimiter;
+    private final CircuitBreaker circuitBreaker;
+    private final Cache<String, Fetched<List<CompanyDTO>>> lastKnownGoodPages;
+    private final Cache<Integer, Fetched<CompanyDTO>> lastKnownGoodCompanies;
 
-    public CompanyClient(WebClient.Builder webClientBuilder, UrlBuilderUtils urlBuilderUtils, @Value("${external.db.api.base-url}") String externalApiBaseUrl) {
-        this.webClient = webClientBuilder.baseUrl(externalApiBaseUrl)
+    public CompanyClient(UpstreamConnectionPools upstreamConnectionPools, UrlBuilderUtils urlBuilderUtils, MeterRegistry meterRegistry,
+                         ConcurrencyLimiters concurrencyLimiters, @Value("${external.db.api.base-url}") String externalApiBaseUrl,
+                         @Value("${cashflow.upstream.circuit-breaker.failure-threshold:5}") int failureThreshold,
+                         @Value("${cashflow.upstream.circuit-breaker.open-duration:30s}") Duration openDuration,
+                         @Value("${cashflow.upstream.circuit-breaker.last-known-good-size:10000}") long lastKnownGoodSize) {
+        this.webClient = upstreamConnectionPools.webClientBuilder(Endpoint.COMPANIES)
+                .baseUrl(externalApiBaseUrl)
                 .exchangeStrategies(ExchangeStrategies.builder()
                         .codecs(configurer -> configurer.defaultCodecs().maxInMemorySize(BYTE_COUNT))
                         .build())
                 .build();
         this.urlBuilderUtils = urlBuilderUtils;
+        this.companiesSingleFlight = new SingleFlight<>("companies", meterRegistry);
+        this.companySingleFlight = new SingleFlight<>("company", meterRegistry);
+        this.concurrencyLimiter = concurrencyLimiters.externalApi();
+        this.circuitBreaker = new CircuitBreaker("companies", failureThreshold, openDuration,
+                () -> fetchCompanies(urlBuilderUtils.buildCompaniesUrl(1, null)), meterRegistry);
+        this.lastKnownGoodPages = Caffeine.newBuilder().maximumSize(lastKnownGoodSize).build();
+        this.lastKnownGoodCompanies = Caffeine.newBuilder().maximumSize(lastKnownGoodSize).build();
     }
 
-    public Mono<List<CompanyDTO>> getCompanies(@Nullable Integer limit, @Nullable Integer afterId) {
+    @PreDestroy
+    public void stopCircuitBreaker() {
+        circuitBreaker.dispose();
+    }
+
+    /**
+     * Fetches a page of companies. While the upstream fails or its circuit is open, the last successful answer for the
+     * same page is returned flagged as stale; without one, the failure is propagated.
+     */
+    public Mono<Fetched<List<CompanyDTO>>> getCompanies(@Nullable Integer limit, @Nullable Integer afterId) {
         var url = urlBuilderUtils.buildCompaniesUrl(limit, afterId);
+        return circuitBreaker.execute(
+                () -> companiesSingleFlight.execute(url, () -> concurrencyLimiter.run(() -> fetchCompanies(url)))
+                        .map(Fetched::fresh)
+                        .doOnNext(fetched -> lastKnownGoodPages.put(url, fetched)),
+                error -> lastKnownGood(lastKnownGoodPages.getIfPresent(url), url, error));
+    }
+
+    private Mono<List<CompanyDTO>> fetchCompanies(String url) {
         return webClient.get()
                 .uri(url)
                 .retrieve()
@@ -55,10 +102,28 @@ public class CompanyClient {
                 .map(response -> response != null ? Arrays.asList(response) : Collections.<CompanyDTO>emptyList())
                 .doOnSuccess(result -> log.info("Successfully fetched {} companies from {}", result.size(), url))
                 .doOnError(e -> log.error("Failed to fetch companies from {}", url, e));
+    }
+
+    /**
+     * Fetches one company, falling back to the last successful answer for it like {@link #getCompanies}.
+     */
+    public Mono<Fetched<CompanyDTO>> getCompanyById(Integer companyId) {
+        return circuitBreaker.execute(
+                () -> companySingleFlight.execute(companyId, () -> concurrencyLimiter.run(() -> fetchCompanyById(companyId)))
+                        .map(Fetched::fresh)
+                        .doOnNext(fetched -> lastKnownGoodCompanies.put(companyId, fetched)),
+                error -> lastKnownGood(lastKnownGoodCompanies.getIfPresent(companyId), companyId, error));
+    }
 
+    private static <T> Mono<Fetched<T>> lastKnownGood(@Nullable Fetched<T> last, Object key, Throwable error) {
+        if (last == null) {
+            return Mono.error(error);
+        }
+        log.warn("Serving companies for {} fetched at {}: {}", key, last.fetchedAt(), error.getMessage());
+        return Mono.just(last.asStale());
     }
 
-    public Mono<CompanyDTO> getCompanyById(Integer companyId) {
+    private Mono<CompanyDTO> fetchCompanyById(Integer companyId) {
         var url = urlBuilderUtils.buildCompanyUrl(companyId);
         return webClient.get()
                 .uri(url)
@@ -0,0 +1,14 @@
+package com.example.cashflow_monitoring.company;
+
+import org.springframework.data.domain.Limit;
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+@Repository
+public interface CompanyRepository extends ReactiveMongoRepository<Company, Integer> {
+    Flux<Company> findByIdGreaterThanOrderByIdAsc(Integer afterId, Limit limit);
+
+    Mono<Company> findTopByOrderByIdDesc();
+}
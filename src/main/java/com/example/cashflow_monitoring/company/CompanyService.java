@@ -1,58 +1,202 @@
 package com.example.cashflow_monitoring.company;
 
 import com.example.cashflow_monitoring.exception.InternalServerErrorException;
+import com.example.cashflow_monitoring.util.BackgroundLoop;
+import com.example.cashflow_monitoring.util.CursorPaginator;
+import com.example.cashflow_monitoring.util.Fetched;
 import jakarta.annotation.Nullable;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
+import reactor.core.Disposable;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
-import java.util.ArrayList;
+import java.time.Duration;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static com.example.cashflow_monitoring.util.Constants.DEFAULT_LIMIT_FOR_REQUESTS;
 
+/**
+ * Serves companies from a local mirror of the upstream company directory. The mirror is kept in the
+ * {@code companies} collection and a bounded in-process cache, and is synced in the background by fetching the
+ * upstream listing after the highest mirrored company id. Listing reads only wait for the mirror to be restored from
+ * Mongo, not for it to catch up with the upstream; until a sync has stored anything they fall back to the upstream.
+ */
 @Service
 public class CompanyService {
     private static final Logger log = LoggerFactory.getLogger(CompanyService.class);
     private final CompanyClient companyClient;
     private final CompanyMapper companyMapper;
+    private final CompanyRepository companyRepository;
+    private final Duration syncInterval;
+    private final Cache<Integer, Company> companies;
+    private final AtomicInteger syncedUpToCompanyId = new AtomicInteger();
+    private final Mono<Boolean> restored;
+    private final Mono<Boolean> ready;
+    private volatile boolean mirrored;
+    @Nullable
+    private Disposable syncTask;
 
-    public CompanyService(CompanyClient companyClient, CompanyMapper companyMapper) {
+    public CompanyService(CompanyClient companyClient, CompanyMapper companyMapper, CompanyRepository companyRepository,
+                          MeterRegistry meterRegistry,
+                          @Value("${cashflow.companies.sync-interval:1m}") Duration syncInterval,
+                          @Value("${cashflow.companies.cache.maximum-size:10000}") long cacheMaximumSize) {
         this.companyClient = companyClient;
         this.companyMapper = companyMapper;
+        this.companyRepository = companyRepository;
+        this.syncInterval = syncInterval;
+        Cache<Integer, Company> cache = Caffeine.newBuilder()
+                .maximumSize(cacheMaximumSize)
+                .recordStats()
+                .build();
+        this.companies = CaffeineCacheMetrics.monitor(meterRegistry, cache, "companies");
+        this.restored = Mono.defer(this::restore)
+                .thenReturn(Boolean.TRUE)
+                .cacheInvalidateIf(done -> false);
+        this.ready = restored.then(Mono.defer(this::initialSync))
+                .thenReturn(Boolean.TRUE)
+                .cacheInvalidateIf(done -> false);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void startSync() {
+        syncTask = BackgroundLoop.start(Duration.ZERO, syncInterval, () -> ready.then(sync()),
+                e -> log.warn("Company directory sync failed, continuing after company id {}",
+                        syncedUpToCompanyId.get(), e));
+    }
+
+    @PreDestroy
+    public void stopSync() {
+        if (syncTask != null) {
+            syncTask.dispose();
+        }
+    }
+
+    /**
+     * Completes once the mirror has been restored from Mongo and caught up with the upstream listing. A failed
+     * upstream sync does not fail it; the mirror then serves what it already has.
+     */
+    public Mono<Void> awaitMirror() {
+        return ready.then();
     }
 
     public Mono<List<Company>> getAllCompaniesPaginated(@Nullable Integer limit, @Nullable Integer afterId) {
-        return fetchPaginatedCompanies(limit, afterId, new ArrayList<>())
+        return restored.then(Mono.defer(() -> mirrored
+                ? getMirroredCompanies(limit, afterId)
+                : streamCompanies(limit, afterId).collectList()));
+    }
+
+    /**
+     * Streams mirrored companies in id order after {@code afterId}, fetching them page by page from Mongo.
+     */
+    public Flux<Company> streamMirroredCompanies(@Nullable Integer afterId) {
+        return CursorPaginator.paginate(
+                afterId != null ? afterId : 0,
+                cursor -> companyRepository.findByIdGreaterThanOrderByIdAsc(cursor, Limit.of(DEFAULT_LIMIT_FOR_REQUESTS)),
+                (cursor, lastCompany) -> lastCompany.id(),
+                DEFAULT_LIMIT_FOR_REQUESTS);
+    }
+
+    public Flux<Company> streamCompanies(@Nullable Integer limit, @Nullable Integer afterId) {
+        var pageSize = limit != null ? Math.min(limit, DEFAULT_LIMIT_FOR_REQUESTS) : DEFAULT_LIMIT_FOR_REQUESTS;
+        var companies = CursorPaginator.paginate(
+                afterId,
+                cursor -> companyClient.getCompanies(pageSize, cursor)
+                        .flatMapIterable(Fetched::value)
+                        .map(companyMapper::toEntity),
+                (cursor, lastCompany) -> lastCompany.id(),
+                pageSize);
+        return (limit != null ? companies.take(Math.max(limit, 0)) : companies)
                 .onErrorMap(exception -> new InternalServerErrorException(
                         "Failed to retrieve company data. Please try again later or contact support if the problem persists.",
                         exception
                 ));
     }
 
-    private Mono<List<Company>> fetchPaginatedCompanies(@Nullable Integer limit, @Nullable Integer afterId,
-                                                        List<Company> accumulatedCompanies) {
-        return companyClient.getCompanies(limit, afterId)
-                .flatMapMany(Flux::fromIterable)
-                .map(companyMapper::toEntity)
-                .collectList()
-                .flatMap(companies -> {
-                    accumulatedCompanies.addAll(companies);
-                    if (companies.size() >= DEFAULT_LIMIT_FOR_REQUESTS) {
-                        var lastCompanyId = companies.getLast().id();
-                        return fetchPaginatedCompanies(limit != null ? limit - DEFAULT_LIMIT_FOR_REQUESTS : null,
-                                lastCompanyId, accumulatedCompanies);
-                    }
-                    return Mono.just(accumulatedCompanies);
-                });
+    public Mono<Company> getCompanyById(Integer companyId) {
+        var cached = companies.getIfPresent(companyId);
+        if (cached != null) {
+            return Mono.just(cached);
+        }
+        return companyRepository.findById(companyId)
+                .switchIfEmpty(Mono.defer(() -> fetchCompanyById(companyId)))
+                .doOnNext(company -> companies.put(company.id(), company));
     }
 
-    public Mono<Company> getCompanyById(Integer companyId) {
+    private Mono<Company> fetchCompanyById(Integer companyId) {
         return companyClient.getCompanyById(companyId)
-                .map(companyMapper::toEntity)
-                .doOnError(e -> log.error("Error mapping CompanyDTO to Company for ID {}", companyId, e));
+                .flatMap(fetched -> {
+                    var company = companyMapper.toEntity(fetched.value());
+                    return fetched.stale() ? Mono.just(company) : companyRepository.save(company);
+                })
+                .doOnError(e -> log.error("Error fetching company with ID {}", companyId, e));
+    }
+
+    private Mono<List<Company>> getMirroredCompanies(@Nullable Integer limit, @Nullable Integer afterId) {
+        var pageSize = limit != null ? Math.min(Math.max(limit, 0), DEFAULT_LIMIT_FOR_REQUESTS) : DEFAULT_LIMIT_FOR_REQUESTS;
+        if (pageSize == 0) {
+            return Mono.just(List.of());
+        }
+        if (limit == null) {
+            return streamMirroredCompanies(afterId).collectList();
+        }
+        return companyRepository.findByIdGreaterThanOrderByIdAsc(afterId != null ? afterId : 0, Limit.of(pageSize))
+                .collectList();
+    }
+
+    private Mono<Void> restore() {
+        return companyRepository.findTopByOrderByIdDesc()
+                .doOnNext(company -> {
+                    syncedUpToCompanyId.set(company.id());
+                    mirrored = true;
+                    log.info("Restored company directory mirror up to company id {}", company.id());
+                })
+                .onErrorResume(e -> {
+                    log.warn("Could not restore company directory mirror, reading companies from the upstream", e);
+                    return Mono.empty();
+                })
+                .then();
     }
 
-}
\ No newline at end of file
+    private Mono<Void> initialSync() {
+        return sync()
+                .onErrorResume(e -> {
+                    log.warn("Initial company directory sync failed, serving the mirror up to company id {}",
+                            syncedUpToCompanyId.get(), e);
+                    return Mono.empty();
+                });
+    }
+
+    private Mono<Void> sync() {
+        return Mono.defer(() -> {
+            var afterId = syncedUpToCompanyId.get();
+            return streamCompanies(null, afterId > 0 ? afterId : null)
+                    .buffer(DEFAULT_LIMIT_FOR_REQUESTS)
+                    .concatMap(page -> companyRepository.saveAll(page)
+                            .doOnNext(company -> {
+                                companies.put(company.id(), company);
+                                syncedUpToCompanyId.accumulateAndGet(company.id(), Math::max);
+                            })
+                            .count())
+                    .reduce(0L, Long::sum)
+                    .doOnNext(count -> {
+                        if (count > 0) {
+                            mirrored = true;
+                            log.info("Synced {} companies into the company directory mirror", count);
+                        }
+                    })
+                    .then();
+        });
+    }
+}
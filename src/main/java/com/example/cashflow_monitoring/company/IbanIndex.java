@@ -0,0 +1,383 @@
+package com.example.cashflow_monitoring.company;
+
+import org.springframework.lang.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Maps IBANs to company ids. Keys are stored as normalized IBAN bytes (upper case, without whitespace) in an
+ * open-addressing table with linear probing next to a parallel {@code int[]} of company ids, so an entry costs
+ * little more than the IBAN bytes themselves. Lookups normalize on the fly and do not allocate; they run as
+ * optimistic reads and only fall back to a read lock when a concurrent write interferes. The keys of every company
+ * are also tracked per company id, so replacing or removing a company only touches its own entries.
+ */
+public final class IbanIndex {
+
+    private static final int SNAPSHOT_MAGIC = 0x49424958;
+    private static final int MAX_KEY_LENGTH = 255;
+    private static final int MIN_CAPACITY = 16;
+    private static final double MAX_LOAD_FACTOR = 0.6;
+
+    private final StampedLock lock = new StampedLock();
+    private final Map<Integer, List<byte[]>> keysByCompany = new HashMap<>();
+    private Table table;
+    private int size;
+
+    public IbanIndex() {
+        this(MIN_CAPACITY);
+    }
+
+    public IbanIndex(int expectedSize) {
+        this.table = new Table(capacityFor(expectedSize));
+    }
+
+    @Nullable
+    public Integer getCompanyId(@Nullable String iban) {
+        if (iban == null) {
+            return null;
+        }
+        var stamp = lock.tryOptimisticRead();
+        var companyId = find(table, iban);
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                companyId = find(table, iban);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return companyId < 0 ? null : companyId;
+    }
+
+    public void put(String iban, int companyId) {
+        var key = normalize(iban);
+        if (!isValidKey(key)) {
+            return;
+        }
+        var stamp = lock.writeLock();
+        try {
+            insert(key, companyId);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    public void remove(String iban) {
+        var key = normalize(iban);
+        var stamp = lock.writeLock();
+        try {
+            delete(key);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Replaces all IBANs of the company with the given ones.
+     */
+    public void putCompany(int companyId, Collection<String> ibans) {
+        var keys = ibans.stream().map(IbanIndex::normalize).filter(IbanIndex::isValidKey).toList();
+        var stamp = lock.writeLock();
+        try {
+            deleteCompany(companyId);
+            keys.forEach(key -> insert(key, companyId));
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    public void removeCompany(int companyId) {
+        var stamp = lock.writeLock();
+        try {
+            deleteCompany(companyId);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Adds the companies of {@code older} this index has no IBANs for, without overwriting IBANs it already maps.
+     * Used to restore a snapshot into an index that may already hold newer entries; {@code older} must not be
+     * modified concurrently.
+     */
+    public void putMissingCompanies(IbanIndex older) {
+        var stamp = lock.writeLock();
+        try {
+            older.keysByCompany.forEach((companyId, keys) -> {
+                if (!keysByCompany.containsKey(companyId)) {
+                    keys.stream().filter(key -> slotOf(key) < 0).forEach(key -> insert(key, companyId));
+                }
+            });
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    public int size() {
+        var stamp = lock.readLock();
+        try {
+            return size;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Writes the index to the given file, replacing it atomically. {@code syncedUpToCompanyId} is stored with the
+     * entries and returned by {@link #readSnapshot} so a sync can continue after it.
+     */
+    public void writeSnapshot(Path file, int syncedUpToCompanyId) throws IOException {
+        var tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (var out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+            var stamp = lock.readLock();
+            try {
+                out.writeInt(SNAPSHOT_MAGIC);
+                out.writeInt(syncedUpToCompanyId);
+                out.writeInt(size);
+                for (int i = 0; i < table.keys.length; i++) {
+                    var key = table.keys[i];
+                    if (key != null) {
+                        out.writeInt(table.companyIds[i]);
+                        out.writeByte(key.length);
+                        out.write(key);
+                    }
+                }
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Reads a snapshot written by {@link #writeSnapshot}.
+     */
+    public static Snapshot readSnapshot(Path file) throws IOException {
+        try (var in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != SNAPSHOT_MAGIC) {
+                throw new IOException("Not an IBAN index snapshot: " + file);
+            }
+            var syncedUpToCompanyId = in.readInt();
+            var entries = in.readInt();
+            var index = new IbanIndex(entries);
+            for (int i = 0; i < entries; i++) {
+                var companyId = in.readInt();
+                var key = new byte[in.readUnsignedByte()];
+                in.readFully(key);
+                index.insert(key, companyId);
+            }
+            return new Snapshot(index, syncedUpToCompanyId);
+        }
+    }
+
+    private static int find(Table table, String iban) {
+        var keys = table.keys;
+        var mask = keys.length - 1;
+        var slot = hash(iban) & mask;
+        for (int probes = 0; probes <= mask; probes++) {
+            var key = keys[slot];
+            if (key == null) {
+                return -1;
+            }
+            if (matches(key, iban)) {
+                return table.companyIds[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    private int slotOf(byte[] key) {
+        var keys = table.keys;
+        var mask = keys.length - 1;
+        var slot = hash(key) & mask;
+        while (keys[slot] != null) {
+            if (Arrays.equals(keys[slot], key)) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1 - slot;
+    }
+
+    private void insert(byte[] key, int companyId) {
+        var slot = slotOf(key);
+        if (slot >= 0) {
+            var previous = table.companyIds[slot];
+            if (previous != companyId) {
+                unlinkKey(previous, table.keys[slot]);
+                linkKey(companyId, table.keys[slot]);
+                table.companyIds[slot] = companyId;
+            }
+            return;
+        }
+        if (size + 1 > table.keys.length * MAX_LOAD_FACTOR) {
+            resize(table.keys.length * 2);
+            slot = slotOf(key);
+        }
+        slot = -1 - slot;
+        table.keys[slot] = key;
+        table.companyIds[slot] = companyId;
+        linkKey(companyId, key);
+        size++;
+    }
+
+    private void delete(byte[] key) {
+        var slot = slotOf(key);
+        if (slot < 0) {
+            return;
+        }
+        var keys = table.keys;
+        var companyIds = table.companyIds;
+        var mask = keys.length - 1;
+        unlinkKey(companyIds[slot], keys[slot]);
+        keys[slot] = null;
+        size--;
+        var next = slot;
+        while (true) {
+            next = (next + 1) & mask;
+            var candidate = keys[next];
+            if (candidate == null) {
+                return;
+            }
+            var home = hash(candidate) & mask;
+            var stays = slot <= next ? slot < home && home <= next : slot < home || home <= next;
+            if (!stays) {
+                keys[slot] = candidate;
+                companyIds[slot] = companyIds[next];
+                keys[next] = null;
+                slot = next;
+            }
+        }
+    }
+
+    private void deleteCompany(int companyId) {
+        var owned = keysByCompany.remove(companyId);
+        if (owned != null) {
+            owned.forEach(this::delete);
+        }
+    }
+
+    private void linkKey(int companyId, byte[] key) {
+        keysByCompany.computeIfAbsent(companyId, ignored -> new ArrayList<>(1)).add(key);
+    }
+
+    private void unlinkKey(int companyId, byte[] key) {
+        var owned = keysByCompany.get(companyId);
+        if (owned != null && owned.removeIf(ownedKey -> Arrays.equals(ownedKey, key)) && owned.isEmpty()) {
+            keysByCompany.remove(companyId);
+        }
+    }
+
+    private void resize(int capacity) {
+        var old = table;
+        table = new Table(capacity);
+        for (int i = 0; i < old.keys.length; i++) {
+            if (old.keys[i] != null) {
+                var slot = -1 - slotOf(old.keys[i]);
+                table.keys[slot] = old.keys[i];
+                table.companyIds[slot] = old.companyIds[i];
+            }
+        }
+    }
+
+    static byte[] normalize(String iban) {
+        var normalized = new byte[normalizedLength(iban)];
+        var j = 0;
+        for (int i = 0; i < iban.length(); i++) {
+            var c = iban.charAt(i);
+            if (!Character.isWhitespace(c)) {
+                normalized[j++] = (byte) toUpperAscii(c);
+            }
+        }
+        return normalized;
+    }
+
+    private static boolean isValidKey(byte[] key) {
+        return key.length > 0 && key.length <= MAX_KEY_LENGTH;
+    }
+
+    private static int normalizedLength(String iban) {
+        var length = 0;
+        for (int i = 0; i < iban.length(); i++) {
+            if (!Character.isWhitespace(iban.charAt(i))) {
+                length++;
+            }
+        }
+        return length;
+    }
+
+    private static boolean matches(byte[] key, String iban) {
+        var j = 0;
+        for (int i = 0; i < iban.length(); i++) {
+            var c = iban.charAt(i);
+            if (Character.isWhitespace(c)) {
+                continue;
+            }
+            if (j >= key.length || key[j++] != (byte) toUpperAscii(c)) {
+                return false;
+            }
+        }
+        return j == key.length;
+    }
+
+    private static int hash(String iban) {
+        var h = 0;
+        for (int i = 0; i < iban.length(); i++) {
+            var c = iban.charAt(i);
+            if (!Character.isWhitespace(c)) {
+                h = 31 * h + (byte) toUpperAscii(c);
+            }
+        }
+        return spread(h);
+    }
+
+    private static int hash(byte[] key) {
+        var h = 0;
+        for (byte b : key) {
+            h = 31 * h + b;
+        }
+        return spread(h);
+    }
+
+    private static int spread(int h) {
+        h *= 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private static char toUpperAscii(char c) {
+        return c >= 'a' && c <= 'z' ? (char) (c - ('a' - 'A')) : c;
+    }
+
+    private static int capacityFor(int expectedSize) {
+        var needed = (int) Math.ceil(Math.max(expectedSize, 1) / MAX_LOAD_FACTOR);
+        return Math.max(MIN_CAPACITY, Integer.highestOneBit(needed - 1) << 1);
+    }
+
+    private static final class Table {
+        private final byte[][] keys;
+        private final int[] companyIds;
+
+        private Table(int capacity) {
+            this.keys = new byte[capacity][];
+            this.companyIds = new int[capacity];
+        }
+    }
+
+    public record Snapshot(IbanIndex index, int syncedUpToCompanyId) {
+    }
+}
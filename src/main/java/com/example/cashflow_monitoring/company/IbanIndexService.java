@@ -0,0 +1,146 @@
+package com.example.cashflow_monitoring.company;
+
+import com.example.cashflow_monitoring.util.BackgroundLoop;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Service;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Owns the {@link IbanIndex} used to resolve transaction IBANs to companies. The index is restored from its disk
+ * snapshot on startup and then synced incrementally from the local company directory mirror, continuing after the
+ * highest company id seen so far. Without a snapshot it is built from the full mirror. The mirror only ever grows,
+ * so IBAN changes of companies already indexed are only picked up when the company is added again.
+ */
+@Service
+public class IbanIndexService {
+
+    private static final Logger log = LoggerFactory.getLogger(IbanIndexService.class);
+    private final CompanyService companyService;
+    private final Path snapshotFile;
+    private final Duration syncInterval;
+    private final AtomicInteger syncedUpToCompanyId = new AtomicInteger();
+    private final Mono<IbanIndex> ready;
+    private final IbanIndex index = new IbanIndex();
+    private volatile boolean loaded;
+    @Nullable
+    private Disposable syncTask;
+
+    public IbanIndexService(CompanyService companyService,
+                            @Value("${cashflow.iban-index.snapshot-file:data/iban-index.snapshot}") Path snapshotFile,
+                            @Value("${cashflow.iban-index.sync-interval:1m}") Duration syncInterval) {
+        this.companyService = companyService;
+        this.snapshotFile = snapshotFile;
+        this.syncInterval = syncInterval;
+        this.ready = Mono.defer(this::load).cacheInvalidateIf(loaded -> false);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void startSync() {
+        syncTask = BackgroundLoop.start(Duration.ZERO, syncInterval, () -> ready.then(sync()).then(snapshot()),
+                e -> log.warn("IBAN index sync failed, continuing after company id {}", syncedUpToCompanyId.get(), e));
+    }
+
+    @PreDestroy
+    public void stopSync() {
+        if (syncTask != null) {
+            syncTask.dispose();
+        }
+        snapshot().block(Duration.ofSeconds(30));
+    }
+
+    /**
+     * Returns the index once it has been restored or built.
+     */
+    public Mono<IbanIndex> getIndex() {
+        return ready;
+    }
+
+    /**
+     * Adds or replaces the IBANs of a company. Does not move the sync position, companies added out of order must
+     * not make the sync skip the ones before them.
+     */
+    public void addCompany(Company company) {
+        index.putCompany(company.id(), company.ibans());
+    }
+
+    private Mono<IbanIndex> load() {
+        return Mono.fromCallable(this::readSnapshot)
+                .subscribeOn(Schedulers.boundedElastic())
+                .doOnNext(snapshot -> {
+                    index.putMissingCompanies(snapshot.index());
+                    syncedUpToCompanyId.set(snapshot.syncedUpToCompanyId());
+                    log.info("Restored IBAN index with {} IBANs up to company id {}", snapshot.index().size(),
+                            snapshot.syncedUpToCompanyId());
+                })
+                .then(sync())
+                .then(Mono.fromCallable(() -> {
+                    loaded = true;
+                    return index;
+                }));
+    }
+
+    private Mono<Void> sync() {
+        return Mono.defer(() -> {
+            var afterId = syncedUpToCompanyId.get();
+            return companyService.awaitMirror()
+                    .thenMany(companyService.streamMirroredCompanies(afterId))
+                    .doOnNext(company -> {
+                        addCompany(company);
+                        syncedUpToCompanyId.accumulateAndGet(company.id(), Math::max);
+                    })
+                    .count()
+                    .doOnNext(count -> {
+                        if (count > 0) {
+                            log.info("Synced {} companies into IBAN index, {} IBANs indexed", count, index.size());
+                        }
+                    })
+                    .then();
+        });
+    }
+
+    @Nullable
+    private IbanIndex.Snapshot readSnapshot() {
+        if (!Files.exists(snapshotFile)) {
+            return null;
+        }
+        try {
+            return IbanIndex.readSnapshot(snapshotFile);
+        } catch (IOException e) {
+            log.warn("Could not read IBAN index snapshot {}, rebuilding it", snapshotFile, e);
+            return null;
+        }
+    }
+
+    private Mono<Void> snapshot() {
+        if (!loaded) {
+            return Mono.empty();
+        }
+        return Mono.fromCallable(() -> {
+                    if (snapshotFile.getParent() != null) {
+                        Files.createDirectories(snapshotFile.getParent());
+                    }
+                    index.writeSnapshot(snapshotFile, syncedUpToCompanyId.get());
+                    return true;
+                })
+                .subscribeOn(Schedulers.boundedElastic())
+                .onErrorResume(e -> {
+                    log.warn("Could not write IBAN index snapshot {}", snapshotFile, e);
+                    return Mono.empty();
+                })
+                .then();
+    }
+}
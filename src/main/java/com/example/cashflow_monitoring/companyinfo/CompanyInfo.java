@@ -4,6 +4,8 @@ import com.example.cashflow_monitoring.countrydetail.CountryDetail;
 import org.springframework.data.annotation.Id;
 import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.Field;
+import org.springframework.data.mongodb.core.mapping.FieldType;
 
 import java.io.Serializable;
 import java.math.BigDecimal;
@@ -21,6 +23,7 @@ public class CompanyInfo implements Serializable {
     @Indexed(unique = true)
     private Integer companyId;
 
+    @Field(targetType = FieldType.DECIMAL128)
     private BigDecimal balanceEur = BigDecimal.ZERO;
     private UUID lastSepaTransactionId;
     private OffsetDateTime lastSepaTransactionTimestamp;
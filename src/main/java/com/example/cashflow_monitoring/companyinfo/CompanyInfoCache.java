@@ -0,0 +1,195 @@
+package com.example.cashflow_monitoring.companyinfo;
+
+import com.example.cashflow_monitoring.config.ConcurrencyLimiters;
+import com.example.cashflow_monitoring.util.AdaptiveConcurrencyLimiter;
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.connection.ReactiveSubscription;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Function;
+
+/**
+ * Two-tier cache for {@link CompanyInfo}: a bounded in-process Caffeine cache in front of Redis. Concurrent misses
+ * for the same company share a single load, and both tiers use jittered TTLs so entries written together do not
+ * expire together. Writes and evictions are published on a Redis channel so other replicas drop their local copy.
+ */
+@Component
+public class CompanyInfoCache {
+
+    private static final Logger log = LoggerFactory.getLogger(CompanyInfoCache.class);
+    private static final String CACHE_KEY_PREFIX = "companyInfo:";
+    private static final String SEPARATOR = ":";
+    private final ReactiveRedisTemplate<String, CompanyInfo> redisTemplate;
+    private final ReactiveStringRedisTemplate stringRedisTemplate;
+    private final AsyncCache<Integer, CompanyInfo> localCache;
+    private final AdaptiveConcurrencyLimiter concurrencyLimiter;
+    private final Duration redisTtl;
+    private final double ttlJitter;
+    private final String invalidationChannel;
+    private final String instanceId = UUID.randomUUID().toString();
+    @Nullable
+    private Disposable invalidationListener;
+
+    public CompanyInfoCache(ReactiveRedisTemplate<String, CompanyInfo> redisTemplate,
+                            ReactiveStringRedisTemplate stringRedisTemplate,
+                            MeterRegistry meterRegistry,
+                            ConcurrencyLimiters concurrencyLimiters,
+                            @Value("${cashflow.company-info-cache.maximum-size:10000}") long maximumSize,
+                            @Value("${cashflow.company-info-cache.local-ttl:30s}") Duration localTtl,
+                            @Value("${cashflow.company-info-cache.redis-ttl:10m}") Duration redisTtl,
+                            @Value("${cashflow.company-info-cache.ttl-jitter:0.1}") double ttlJitter,
+                            @Value("${cashflow.company-info-cache.invalidation-channel:company-info-invalidations}") String invalidationChannel) {
+        this.redisTemplate = redisTemplate;
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.redisTtl = redisTtl;
+        this.ttlJitter = ttlJitter;
+        this.invalidationChannel = invalidationChannel;
+        this.concurrencyLimiter = concurrencyLimiters.redis();
+        AsyncCache<Integer, CompanyInfo> cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfter(new JitteredExpiry(localTtl))
+                .recordStats()
+                .buildAsync();
+        this.localCache = CaffeineCacheMetrics.monitor(meterRegistry, cache, "companyInfo");
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void startInvalidationListener() {
+        invalidationListener = stringRedisTemplate.listenToChannel(invalidationChannel)
+                .map(ReactiveSubscription.Message::getMessage)
+                .doOnNext(this::onInvalidation)
+                .retryWhen(Retry.backoff(Long.MAX_VALUE, Duration.ofSeconds(1)).maxBackoff(Duration.ofSeconds(30))
+                        .doBeforeRetry(signal -> {
+                            localCache.synchronous().invalidateAll();
+                            log.warn("Company info invalidation listener failed, resubscribing", signal.failure());
+                        }))
+                .subscribe();
+    }
+
+    @PreDestroy
+    public void stopInvalidationListener() {
+        if (invalidationListener != null) {
+            invalidationListener.dispose();
+        }
+    }
+
+    /**
+     * Returns the cached company info, loading it from Redis and then from {@code source} on a miss. Only one load
+     * per company runs at a time; concurrent callers wait for its result.
+     */
+    public Mono<CompanyInfo> get(Integer companyId, Function<Integer, Mono<CompanyInfo>> source) {
+        return Mono.defer(() -> Mono.fromFuture(
+                localCache.get(companyId, (id, executor) -> load(id, source).toFuture()), true));
+    }
+
+    public Mono<CompanyInfo> put(CompanyInfo companyInfo) {
+        var companyId = companyInfo.getCompanyId();
+        localCache.put(companyId, CompletableFuture.completedFuture(companyInfo));
+        return concurrencyLimiter.run(() -> redisTemplate.opsForValue()
+                        .set(cacheKey(companyId), companyInfo, jittered(redisTtl))
+                        .then(publishInvalidation(companyId)))
+                .onErrorResume(error -> {
+                    log.error("Failed to cache company info for companyId: {}", companyId, error);
+                    return Mono.empty();
+                })
+                .thenReturn(companyInfo);
+    }
+
+    public Mono<Long> evict(Integer companyId) {
+        localCache.synchronous().invalidate(companyId);
+        return concurrencyLimiter.run(() -> redisTemplate.delete(cacheKey(companyId))
+                        .flatMap(deleted -> publishInvalidation(companyId).thenReturn(deleted)))
+                .onErrorResume(error -> {
+                    log.error("Failed to evict cached company info for companyId: {}", companyId, error);
+                    return Mono.just(0L);
+                });
+    }
+
+    private Mono<CompanyInfo> load(Integer companyId, Function<Integer, Mono<CompanyInfo>> source) {
+        var cacheKey = cacheKey(companyId);
+        return concurrencyLimiter.run(() -> redisTemplate.opsForValue().get(cacheKey))
+                .onErrorResume(error -> {
+                    log.error("Redis cache unavailable, falling back to MongoDB", error);
+                    return Mono.empty();
+                })
+                .switchIfEmpty(Mono.defer(() -> source.apply(companyId)
+                        .flatMap(companyInfo -> concurrencyLimiter.run(() -> redisTemplate.opsForValue()
+                                        .set(cacheKey, companyInfo, jittered(redisTtl)))
+                                .onErrorResume(error -> Mono.just(false))
+                                .thenReturn(companyInfo))));
+    }
+
+    private Mono<Void> publishInvalidation(Integer companyId) {
+        return stringRedisTemplate.convertAndSend(invalidationChannel, instanceId + SEPARATOR + companyId).then();
+    }
+
+    private void onInvalidation(String message) {
+        var separator = message.lastIndexOf(SEPARATOR);
+        if (separator < 0 || message.startsWith(instanceId + SEPARATOR)) {
+            return;
+        }
+        try {
+            localCache.synchronous().invalidate(Integer.valueOf(message.substring(separator + 1)));
+        } catch (NumberFormatException e) {
+            log.warn("Ignoring malformed company info invalidation: {}", message);
+        }
+    }
+
+    private Duration jittered(Duration ttl) {
+        return Duration.ofNanos(jitteredNanos(ttl.toNanos()));
+    }
+
+    private long jitteredNanos(long ttlNanos) {
+        if (ttlJitter <= 0) {
+            return ttlNanos;
+        }
+        return (long) (ttlNanos * ThreadLocalRandom.current().nextDouble(1 - ttlJitter, 1 + ttlJitter));
+    }
+
+    private static String cacheKey(Integer companyId) {
+        return CACHE_KEY_PREFIX + companyId;
+    }
+
+    private class JitteredExpiry implements Expiry<Integer, CompanyInfo> {
+        private final long ttlNanos;
+
+        private JitteredExpiry(Duration ttl) {
+            this.ttlNanos = ttl.toNanos();
+        }
+
+        @Override
+        public long expireAfterCreate(Integer companyId, CompanyInfo companyInfo, long currentTime) {
+            return jitteredNanos(ttlNanos);
+        }
+
+        @Override
+        public long expireAfterUpdate(Integer companyId, CompanyInfo companyInfo, long currentTime, long currentDuration) {
+            return jitteredNanos(ttlNanos);
+        }
+
+        @Override
+        public long expireAfterRead(Integer companyId, CompanyInfo companyInfo, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.example.cashflow_monitoring.companyinfo;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The transactions of one batch that touch one company, applied to its document in a single update.
+ */
+public class CompanyInfoDelta {
+    private final Integer companyId;
+    private final List<CompanyTransaction> transactions = new ArrayList<>();
+
+    public CompanyInfoDelta(Integer companyId) {
+        this.companyId = companyId;
+    }
+
+    public void addTransaction(CompanyTransaction transaction) {
+        transactions.add(transaction);
+    }
+
+    public Integer getCompanyId() {
+        return companyId;
+    }
+
+    public List<CompanyTransaction> getTransactions() {
+        return transactions;
+    }
+}
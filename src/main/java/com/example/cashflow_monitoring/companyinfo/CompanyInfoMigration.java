@@ -0,0 +1,103 @@
+package com.example.cashflow_monitoring.companyinfo;
+
+import com.example.cashflow_monitoring.config.mongo.OffsetDateTimeToStringConverter;
+import com.example.cashflow_monitoring.config.mongo.StringToOffsetDateTimeConverter;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.AggregationUpdate;
+import org.springframework.data.mongodb.core.aggregation.ConvertOperators;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.regex.Pattern;
+
+/**
+ * Brings {@code company_info} documents written by earlier versions into the shape the atomic update operators rely
+ * on: balances stored as strings are converted to Decimal128, since {@code $inc} and {@code $add} reject non-numeric
+ * values, and ISO-8601 timestamps are rewritten in the fixed-width UTC format, since {@code $max} and the timestamp
+ * ordering of the resume queries compare them as strings. Ingestion waits for {@link #awaitCompletion()}; a failed
+ * migration is retried by the next caller.
+ */
+@Component
+public class CompanyInfoMigration {
+
+    private static final Logger log = LoggerFactory.getLogger(CompanyInfoMigration.class);
+    private static final int BSON_STRING_TYPE = 2;
+    private static final int REWRITE_CONCURRENCY = 16;
+    private static final Pattern FIXED_WIDTH_TIMESTAMP =
+            Pattern.compile("^\\d{4}-\\d{2}-\\d{2}T\\d{2}:\\d{2}:\\d{2}\\.\\d{6}Z$");
+    private static final String BALANCE_EUR = "balanceEur";
+    private static final String[] TIMESTAMP_FIELDS = {"lastSepaTransactionTimestamp", "lastSwiftTransactionTimestamp"};
+    private final ReactiveMongoTemplate reactiveMongoTemplate;
+    private final OffsetDateTimeToStringConverter timestampWriter = new OffsetDateTimeToStringConverter();
+    private final StringToOffsetDateTimeConverter timestampReader = new StringToOffsetDateTimeConverter();
+    private final Mono<Boolean> completed;
+
+    public CompanyInfoMigration(ReactiveMongoTemplate reactiveMongoTemplate) {
+        this.reactiveMongoTemplate = reactiveMongoTemplate;
+        this.completed = Mono.defer(this::migrate)
+                .thenReturn(Boolean.TRUE)
+                .cacheInvalidateIf(done -> false);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void migrateOnReady() {
+        completed.subscribe(null, error -> log.error("Company info migration failed, retrying on next ingestion", error));
+    }
+
+    /**
+     * Completes once every stored document has been migrated.
+     */
+    public Mono<Void> awaitCompletion() {
+        return completed.then();
+    }
+
+    private Mono<Void> migrate() {
+        return convertStringBalances()
+                .thenMany(Flux.fromArray(TIMESTAMP_FIELDS))
+                .concatMap(this::rewriteLegacyTimestamps)
+                .then();
+    }
+
+    private Mono<Void> convertStringBalances() {
+        return reactiveMongoTemplate.updateMulti(
+                        Query.query(Criteria.where(BALANCE_EUR).type(BSON_STRING_TYPE)),
+                        AggregationUpdate.update()
+                                .set(BALANCE_EUR).toValue(ConvertOperators.valueOf(BALANCE_EUR).convertToDecimal()),
+                        CompanyInfo.class)
+                .doOnNext(result -> log.info("Converted {} string balances to Decimal128", result.getModifiedCount()))
+                .then();
+    }
+
+    /**
+     * Rewrites one timestamp field of every document still holding it in the ISO-8601 format. Each rewrite only
+     * matches the value it read, so a concurrent writer that already stored a newer timestamp is left alone.
+     */
+    private Mono<Long> rewriteLegacyTimestamps(String field) {
+        var collection = reactiveMongoTemplate.getCollectionName(CompanyInfo.class);
+        var legacy = Query.query(Criteria.where(field).type(BSON_STRING_TYPE).not().regex(FIXED_WIDTH_TIMESTAMP));
+        legacy.fields().include(field);
+        return reactiveMongoTemplate.find(legacy, Document.class, collection)
+                .flatMap(document -> {
+                    var stored = document.getString(field);
+                    return reactiveMongoTemplate.updateFirst(
+                            Query.query(Criteria.where("_id").is(document.get("_id")).and(field).is(stored)),
+                            Update.update(field, timestampWriter.convert(timestampReader.convert(stored))),
+                            collection);
+                }, REWRITE_CONCURRENCY)
+                .reduce(0L, (count, result) -> count + result.getModifiedCount())
+                .doOnNext(count -> {
+                    if (count > 0) {
+                        log.info("Rewrote {} legacy {} values in the fixed-width format", count, field);
+                    }
+                });
+    }
+}
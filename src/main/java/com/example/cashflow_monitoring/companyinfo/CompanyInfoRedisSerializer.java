@@ -0,0 +1,241 @@
+package com.example.cashflow_monitoring.companyinfo;
+
+import com.example.cashflow_monitoring.countrydetail.CountryDetail;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.bson.types.ObjectId;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+import org.springframework.lang.Nullable;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.UUID;
+
+/**
+ * Redis value serializer for cached {@link CompanyInfo}. The binary format starts with a version byte and writes
+ * UUIDs as two longs, timestamps as epoch micros plus offset, the balance as unscaled bytes plus scale and the
+ * country details as a packed list of code and count. Values starting with <code>{</code> are read as JSON, so
+ * entries written by older instances stay readable; {@link Format#JSON} keeps writing them during a rolling upgrade.
+ */
+public class CompanyInfoRedisSerializer implements RedisSerializer<CompanyInfo> {
+
+    public static final byte VERSION = 1;
+    private static final byte JSON_START = '{';
+    private static final int HAS_ID = 1;
+    private static final int HAS_OBJECT_ID = 1 << 1;
+    private static final int HAS_COMPANY_ID = 1 << 2;
+    private static final int HAS_BALANCE = 1 << 3;
+    private static final int HAS_SEPA_ID = 1 << 4;
+    private static final int HAS_SEPA_TIMESTAMP = 1 << 5;
+    private static final int HAS_SWIFT_ID = 1 << 6;
+    private static final int HAS_SWIFT_TIMESTAMP = 1 << 7;
+
+    public enum Format {
+        BINARY,
+        JSON
+    }
+
+    private final ObjectMapper objectMapper;
+    private final Format writeFormat;
+
+    public CompanyInfoRedisSerializer(ObjectMapper objectMapper, Format writeFormat) {
+        this.objectMapper = objectMapper;
+        this.writeFormat = writeFormat;
+    }
+
+    @Override
+    public byte[] serialize(@Nullable CompanyInfo companyInfo) throws SerializationException {
+        if (companyInfo == null) {
+            return new byte[0];
+        }
+        try {
+            return writeFormat == Format.JSON ? objectMapper.writeValueAsBytes(companyInfo) : writeBinary(companyInfo);
+        } catch (IOException e) {
+            throw new SerializationException("Could not serialize company info " + companyInfo.getCompanyId(), e);
+        }
+    }
+
+    @Override
+    @Nullable
+    public CompanyInfo deserialize(@Nullable byte[] bytes) throws SerializationException {
+        if (bytes == null || bytes.length == 0) {
+            return null;
+        }
+        try {
+            if (bytes[0] == JSON_START) {
+                return objectMapper.readValue(bytes, CompanyInfo.class);
+            }
+            if (bytes[0] != VERSION) {
+                throw new SerializationException("Unsupported company info format version " + bytes[0]);
+            }
+            return readBinary(new DataInputStream(new ByteArrayInputStream(bytes, 1, bytes.length - 1)));
+        } catch (IOException e) {
+            throw new SerializationException("Could not deserialize company info", e);
+        }
+    }
+
+    private static byte[] writeBinary(CompanyInfo companyInfo) throws IOException {
+        var bytes = new ByteArrayOutputStream(64 + companyInfo.getCountryDetails().size() * 8);
+        var out = new DataOutputStream(bytes);
+        out.writeByte(VERSION);
+        var id = companyInfo.getId();
+        var objectId = id != null && ObjectId.isValid(id);
+        out.writeByte(flag(id != null, HAS_ID)
+                | flag(objectId, HAS_OBJECT_ID)
+                | flag(companyInfo.getCompanyId() != null, HAS_COMPANY_ID)
+                | flag(companyInfo.getBalanceEur() != null, HAS_BALANCE)
+                | flag(companyInfo.getLastSepaTransactionId() != null, HAS_SEPA_ID)
+                | flag(companyInfo.getLastSepaTransactionTimestamp() != null, HAS_SEPA_TIMESTAMP)
+                | flag(companyInfo.getLastSwiftTransactionId() != null, HAS_SWIFT_ID)
+                | flag(companyInfo.getLastSwiftTransactionTimestamp() != null, HAS_SWIFT_TIMESTAMP));
+        if (objectId) {
+            out.write(new ObjectId(id).toByteArray());
+        } else if (id != null) {
+            writeString(out, id);
+        }
+        if (companyInfo.getCompanyId() != null) {
+            writeVarLong(out, zigZag(companyInfo.getCompanyId()));
+        }
+        if (companyInfo.getBalanceEur() != null) {
+            writeDecimal(out, companyInfo.getBalanceEur());
+        }
+        writeUuid(out, companyInfo.getLastSepaTransactionId());
+        writeTimestamp(out, companyInfo.getLastSepaTransactionTimestamp());
+        writeUuid(out, companyInfo.getLastSwiftTransactionId());
+        writeTimestamp(out, companyInfo.getLastSwiftTransactionTimestamp());
+        var countryDetails = companyInfo.getCountryDetails() != null ? companyInfo.getCountryDetails() : new ArrayList<CountryDetail>();
+        writeVarLong(out, countryDetails.size());
+        for (var countryDetail : countryDetails) {
+            writeString(out, countryDetail.getCountryCode());
+            writeVarLong(out, zigZag(countryDetail.getNumberOfTransactions()));
+        }
+        return bytes.toByteArray();
+    }
+
+    private static CompanyInfo readBinary(DataInputStream in) throws IOException {
+        var flags = in.readUnsignedByte();
+        var companyInfo = new CompanyInfo();
+        if (has(flags, HAS_OBJECT_ID)) {
+            var objectId = new byte[12];
+            in.readFully(objectId);
+            companyInfo.setId(new ObjectId(objectId).toHexString());
+        } else if (has(flags, HAS_ID)) {
+            companyInfo.setId(readString(in));
+        }
+        if (has(flags, HAS_COMPANY_ID)) {
+            companyInfo.setCompanyId((int) unZigZag(readVarLong(in)));
+        }
+        companyInfo.setBalanceEur(has(flags, HAS_BALANCE) ? readDecimal(in) : null);
+        if (has(flags, HAS_SEPA_ID)) {
+            companyInfo.setLastSepaTransactionId(new UUID(in.readLong(), in.readLong()));
+        }
+        if (has(flags, HAS_SEPA_TIMESTAMP)) {
+            companyInfo.setLastSepaTransactionTimestamp(readTimestamp(in));
+        }
+        if (has(flags, HAS_SWIFT_ID)) {
+            companyInfo.setLastSwiftTransactionId(new UUID(in.readLong(), in.readLong()));
+        }
+        if (has(flags, HAS_SWIFT_TIMESTAMP)) {
+            companyInfo.setLastSwiftTransactionTimestamp(readTimestamp(in));
+        }
+        var countryDetailCount = (int) readVarLong(in);
+        var countryDetails = new ArrayList<CountryDetail>(countryDetailCount);
+        for (var i = 0; i < countryDetailCount; i++) {
+            countryDetails.add(new CountryDetail(readString(in), (int) unZigZag(readVarLong(in))));
+        }
+        companyInfo.setCountryDetails(countryDetails);
+        return companyInfo;
+    }
+
+    private static void writeUuid(DataOutputStream out, @Nullable UUID uuid) throws IOException {
+        if (uuid != null) {
+            out.writeLong(uuid.getMostSignificantBits());
+            out.writeLong(uuid.getLeastSignificantBits());
+        }
+    }
+
+    private static void writeTimestamp(DataOutputStream out, @Nullable OffsetDateTime timestamp) throws IOException {
+        if (timestamp != null) {
+            writeVarLong(out, zigZag(ChronoUnit.MICROS.between(Instant.EPOCH, timestamp.toInstant())));
+            writeVarLong(out, zigZag(timestamp.getOffset().getTotalSeconds()));
+        }
+    }
+
+    private static OffsetDateTime readTimestamp(DataInputStream in) throws IOException {
+        var instant = Instant.EPOCH.plus(unZigZag(readVarLong(in)), ChronoUnit.MICROS);
+        return OffsetDateTime.ofInstant(instant, ZoneOffset.ofTotalSeconds((int) unZigZag(readVarLong(in))));
+    }
+
+    private static void writeDecimal(DataOutputStream out, BigDecimal decimal) throws IOException {
+        var unscaled = decimal.unscaledValue().toByteArray();
+        writeVarLong(out, zigZag(decimal.scale()));
+        writeVarLong(out, unscaled.length);
+        out.write(unscaled);
+    }
+
+    private static BigDecimal readDecimal(DataInputStream in) throws IOException {
+        var scale = (int) unZigZag(readVarLong(in));
+        var unscaled = new byte[(int) readVarLong(in)];
+        in.readFully(unscaled);
+        return new BigDecimal(new BigInteger(unscaled), scale);
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        var bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarLong(out, bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        var bytes = new byte[(int) readVarLong(in)];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeVarLong(DataOutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private static long readVarLong(DataInputStream in) throws IOException {
+        var value = 0L;
+        for (var shift = 0; shift < 64; shift += 7) {
+            var b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed variable length number");
+    }
+
+    private static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static int flag(boolean present, int flag) {
+        return present ? flag : 0;
+    }
+
+    private static boolean has(int flags, int flag) {
+        return (flags & flag) != 0;
+    }
+}
@@ -1,11 +1,18 @@
 package com.example.cashflow_monitoring.companyinfo;
 
+import org.springframework.data.mongodb.repository.Query;
 import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
 import org.springframework.stereotype.Repository;
 import reactor.core.publisher.Mono;
 
 @Repository
 public interface CompanyInfoRepository extends ReactiveMongoRepository<CompanyInfo, String> {
+
+    /**
+     * Leaves out the applied transaction windows, they are only read by the update pipeline and make up most of an
+     * active company's document.
+     */
+    @Query(value = "{companyId: ?0}", fields = "{appliedSepaTransactions: 0, appliedSwiftTransactions: 0}")
     Mono<CompanyInfo> findByCompanyId(Integer companyId);
 
     Mono<CompanyInfo> findTopByOrderByCompanyIdDesc();
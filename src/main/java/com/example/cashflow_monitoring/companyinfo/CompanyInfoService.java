@@ -1,56 +1,60 @@
 package com.example.cashflow_monitoring.companyinfo;
 
 import com.example.cashflow_monitoring.company.CompanyService;
+import com.example.cashflow_monitoring.company.IbanIndexService;
+import com.example.cashflow_monitoring.config.ConcurrencyLimiters;
 import com.example.cashflow_monitoring.exception.NotFoundException;
+import com.example.cashflow_monitoring.util.AdaptiveConcurrencyLimiter;
+import com.example.cashflow_monitoring.util.SingleFlight;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import java.math.BigDecimal;
-import java.time.Duration;
+import java.util.Collection;
 import java.util.List;
 
 @Service
 public class CompanyInfoService {
 
     private static final Logger log = LoggerFactory.getLogger(CompanyInfoService.class);
-    private static final String CACHE_KEY_PREFIX = "companyInfo:";
+    private static final String COMPANY_ID = "companyId";
     private final CompanyService companyService;
+    private final IbanIndexService ibanIndexService;
     private final CompanyInfoRepository companyInfoRepository;
-    private final ReactiveRedisTemplate<String, CompanyInfo> redisTemplate;
-
-    public CompanyInfoService(CompanyService companyService, CompanyInfoRepository companyInfoRepository,
-                              ReactiveRedisTemplate<String, CompanyInfo> redisTemplate) {
+    private final CompanyInfoCache companyInfoCache;
+    private final ReactiveMongoTemplate reactiveMongoTemplate;
+    private final SingleFlight<Integer, CompanyInfo> singleFlight;
+    private final AdaptiveConcurrencyLimiter mongoConcurrencyLimiter;
+
+    public CompanyInfoService(CompanyService companyService, IbanIndexService ibanIndexService,
+                              CompanyInfoRepository companyInfoRepository,
+                              CompanyInfoCache companyInfoCache,
+                              ReactiveMongoTemplate reactiveMongoTemplate,
+                              MeterRegistry meterRegistry, ConcurrencyLimiters concurrencyLimiters) {
         this.companyService = companyService;
+        this.ibanIndexService = ibanIndexService;
         this.companyInfoRepository = companyInfoRepository;
-        this.redisTemplate = redisTemplate;
+        this.companyInfoCache = companyInfoCache;
+        this.reactiveMongoTemplate = reactiveMongoTemplate;
+        this.singleFlight = new SingleFlight<>("company-info", meterRegistry);
+        this.mongoConcurrencyLimiter = concurrencyLimiters.mongo();
     }
 
     public Mono<CompanyInfo> getCachedCompanyInfoByCompanyId(Integer companyId) {
-        var cacheKey = CACHE_KEY_PREFIX + companyId.toString();
-        return redisTemplate.opsForValue()
-                .get(cacheKey)
-                .flatMap(cachedCompanyInfo -> {
-                    log.info("Fetched company info from cache for companyId: {}", companyId);
-                    return Mono.just(cachedCompanyInfo);
-                })
-                .switchIfEmpty(
-                        getCompanyInfoByCompanyId(companyId)
-                                .flatMap(companyInfo -> redisTemplate.opsForValue()
-                                        .set(cacheKey, companyInfo, Duration.ofMinutes(10))
-                                        .thenReturn(companyInfo))
-                )
-                .onErrorResume(error -> {
-                    log.error("Redis cache unavailable, falling back to MongoDB", error);
-                    return getCompanyInfoByCompanyId(companyId);
-                });
+        return companyInfoCache.get(companyId, this::getCompanyInfoByCompanyId);
     }
 
     public Mono<CompanyInfo> getCompanyInfoByCompanyId(Integer companyId) {
-        return companyInfoRepository.findByCompanyId(companyId)
+        return singleFlight.execute(companyId,
+                        () -> mongoConcurrencyLimiter.run(() -> companyInfoRepository.findByCompanyId(companyId)))
                 .doOnError(error -> log.error("Error fetching company info for ID {}: {}", companyId, error.getMessage()));
     }
 
@@ -62,7 +66,7 @@ public class CompanyInfoService {
 
     public Mono<BigDecimal> getCompanyBalanceByCompanyId(Integer companyId) {
         log.info("Fetching balance for company ID: {}", companyId);
-        return getCompanyInfoByCompanyId(companyId)
+        return getCachedCompanyInfoByCompanyId(companyId)
                 .switchIfEmpty(Mono.error(new NotFoundException("Could not find companyInfo for this CompanyId")))
                 .map(CompanyInfo::getBalanceEur)
                 .doOnSuccess(result -> log.info("Successfully processed company balance: {}", result))
@@ -70,14 +74,42 @@ public class CompanyInfoService {
     }
 
     public Mono<CompanyInfo> updateCompanyInfo(CompanyInfo companyInfo) {
-        var cacheKey = CACHE_KEY_PREFIX + companyInfo.getCompanyId().toString();
         return saveCompanyInfo(companyInfo)
-                .flatMap(savedInfo ->
-                        redisTemplate
-                                .opsForValue()
-                                .set(cacheKey, savedInfo, Duration.ofMinutes(10))
-                                .thenReturn(savedInfo)
-                );
+                .flatMap(companyInfoCache::put);
+    }
+
+    /**
+     * Applies each company's delta with one pipeline update per company in a single bulk write. Every update derives
+     * the new state from the stored document and skips transaction sides it already applied, see
+     * {@link CompanyTransactionUpdate}. Deltas of unknown companies match nothing.
+     */
+    public Mono<Void> applyDeltas(Collection<CompanyInfoDelta> deltas) {
+        if (deltas.isEmpty()) {
+            return Mono.empty();
+        }
+        var bulkOperations = reactiveMongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, CompanyInfo.class);
+        deltas.forEach(delta -> bulkOperations.updateOne(
+                Query.query(Criteria.where(COMPANY_ID).is(delta.getCompanyId())),
+                CompanyTransactionUpdate.of(delta.getTransactions())));
+        return bulkOperations.execute()
+                .doOnNext(result -> log.info("Bulk updated {} company infos", result.getModifiedCount()))
+                .thenMany(Flux.fromIterable(deltas))
+                .flatMap(delta -> evictCache(delta.getCompanyId()))
+                .then();
+    }
+
+    /**
+     * Applies one side of a transaction, its balance change, currency count and last transaction of the rail, in a
+     * single atomic update, so concurrent writers for the same company never lose updates and a failure never leaves
+     * it half applied, then evicts the company's cached info. Unknown companies and transaction sides that were
+     * already applied match nothing and leave the cache alone.
+     */
+    public Mono<Void> applyTransaction(Integer companyId, CompanyTransaction transaction) {
+        return reactiveMongoTemplate.updateFirst(CompanyTransactionUpdate.notYetApplied(companyId, transaction),
+                        CompanyTransactionUpdate.of(List.of(transaction)), CompanyInfo.class)
+                .filter(result -> result.getModifiedCount() > 0)
+                .flatMap(result -> evictCache(companyId))
+                .then();
     }
 
     public Mono<CompanyInfo> saveCompanyInfo(CompanyInfo companyInfo) {
@@ -94,8 +126,8 @@ public class CompanyInfoService {
                 .map(CompanyInfo::getCompanyId)
                 .defaultIfEmpty(0)
                 .doOnSuccess(maxCompanyId -> log.debug("Max company ID fetched: {}", maxCompanyId))
-                .flatMap(maxCompanyId -> companyService.getAllCompaniesPaginated(limit, maxCompanyId)
-                        .flatMapMany(Flux::fromIterable)
+                .flatMap(maxCompanyId -> companyService.streamCompanies(limit, maxCompanyId)
+                        .doOnNext(ibanIndexService::addCompany)
                         .flatMap(company -> createCompanyInfoWithCompanyId(company.id()))
                         .collectList());
     }
@@ -119,8 +151,7 @@ public class CompanyInfoService {
     }
 
     public Mono<Long> evictCache(Integer companyId) {
-        var cacheKey = CACHE_KEY_PREFIX + companyId;
-        return redisTemplate.delete(cacheKey);
+        return companyInfoCache.evict(companyId);
     }
 }
 
@@ -0,0 +1,15 @@
+package com.example.cashflow_monitoring.companyinfo;
+
+import com.example.cashflow_monitoring.transaction.Rail;
+
+import java.math.BigDecimal;
+import java.time.OffsetDateTime;
+import java.util.UUID;
+
+/**
+ * One side of a transaction as it is applied to a company: the issuer side with a negative amount, the recipient
+ * side with a positive one. A transfer between two IBANs of the same company is applied once per side.
+ */
+public record CompanyTransaction(UUID transactionId, Rail rail, boolean incoming, OffsetDateTime timestamp,
+                                 BigDecimal signedAmountEur, String currency) {
+}
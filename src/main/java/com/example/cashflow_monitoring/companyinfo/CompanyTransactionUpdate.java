@@ -0,0 +1,170 @@
+package com.example.cashflow_monitoring.companyinfo;
+
+import com.example.cashflow_monitoring.config.mongo.OffsetDateTimeToStringConverter;
+import com.example.cashflow_monitoring.transaction.Rail;
+import org.bson.Document;
+import org.bson.types.Decimal128;
+import org.springframework.data.mongodb.core.aggregation.AggregationOperation;
+import org.springframework.data.mongodb.core.aggregation.AggregationUpdate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static com.example.cashflow_monitoring.util.Constants.DEFAULT_LIMIT_FOR_REQUESTS;
+
+/**
+ * Builds the single pipeline update that applies transactions to one company info document. The balance, the per
+ * currency transaction counts, the last transaction of each rail and the applied transaction window are all derived
+ * from the stored document inside the update, so concurrent updates of the same company never overwrite each other.
+ * <p>
+ * Every applied transaction side is remembered in a per-rail window of the last {@link #APPLIED_WINDOW} sides, and
+ * sides already in the window are skipped, which makes the update idempotent. Ingestion applies one batch of at most
+ * {@code DEFAULT_LIMIT_FOR_REQUESTS} transactions, i.e. twice as many sides, per rail at a time and only ever replays
+ * the batch after the rail's checkpoint, so every side a replay can contain is still in the window. The window fields are not mapped on
+ * {@link CompanyInfo}, they only exist for this update.
+ */
+final class CompanyTransactionUpdate {
+
+    static final int APPLIED_WINDOW = 2 * DEFAULT_LIMIT_FOR_REQUESTS;
+    private static final OffsetDateTimeToStringConverter TIMESTAMP_WRITER = new OffsetDateTimeToStringConverter();
+    private static final String BALANCE_EUR = "balanceEur";
+    private static final String COUNTRY_DETAILS = "countryDetails";
+    private static final String NEW_TRANSACTIONS = "_newTransactions";
+
+    private CompanyTransactionUpdate() {
+    }
+
+    static AggregationUpdate of(Collection<CompanyTransaction> transactions) {
+        var transactionsByRail = transactions.stream()
+                .collect(Collectors.groupingBy(CompanyTransaction::rail, () -> new EnumMap<>(Rail.class),
+                        Collectors.toList()));
+        var pending = new Document();
+        var latest = new Document();
+        var applied = new Document();
+        var newTransactions = new ArrayList<Object>();
+        var temporaryFields = new ArrayList<String>();
+        transactionsByRail.forEach((rail, railTransactions) -> {
+            var pendingField = "_pending" + rail.name();
+            var latestField = "_latest" + rail.name();
+            pending.append(pendingField, filter(new Document("$literal", toDocuments(railTransactions)), "t",
+                    new Document("$not", List.of(new Document("$in",
+                            List.of("$$t.key", ifNull("$" + appliedTransactionsField(rail), List.of())))))));
+            latest.append(latestField, new Document("$reduce", new Document("input", "$" + pendingField)
+                    .append("initialValue", null)
+                    .append("in", cond(new Document("$or", List.of(
+                                    new Document("$eq", Arrays.asList("$$value", null)),
+                                    new Document("$gte", List.of("$$this.timestamp", "$$value.timestamp")))),
+                            "$$this", "$$value"))));
+            var timestamp = "$" + timestampField(rail);
+            var advances = new Document("$and", List.of(
+                    new Document("$ne", Arrays.asList("$" + latestField, null)),
+                    new Document("$or", List.of(
+                            new Document("$eq", Arrays.asList(ifNull(timestamp, null), null)),
+                            new Document("$gte", List.of("$" + latestField + ".timestamp", timestamp))))));
+            applied.append(timestampField(rail), cond(advances, "$" + latestField + ".timestamp", timestamp))
+                    .append(transactionIdField(rail), cond(advances, "$" + latestField + ".key.id",
+                            "$" + transactionIdField(rail)))
+                    .append(appliedTransactionsField(rail), new Document("$slice", List.of(
+                            new Document("$concatArrays", List.of(
+                                    ifNull("$" + appliedTransactionsField(rail), List.of()), "$" + pendingField + ".key")),
+                            -APPLIED_WINDOW)));
+            newTransactions.add("$" + pendingField);
+            temporaryFields.add(pendingField);
+            temporaryFields.add(latestField);
+        });
+        latest.append(NEW_TRANSACTIONS, new Document("$concatArrays", newTransactions));
+        temporaryFields.add(NEW_TRANSACTIONS);
+        applied.append(BALANCE_EUR, new Document("$add", List.of(
+                        ifNull("$" + BALANCE_EUR, new Decimal128(BigDecimal.ZERO)),
+                        new Document("$sum", "$" + NEW_TRANSACTIONS + ".amount"))))
+                .append(COUNTRY_DETAILS, countryDetails());
+        return AggregationUpdate.from(List.of(
+                stage("$set", pending),
+                stage("$set", latest),
+                stage("$set", applied),
+                stage("$unset", temporaryFields)));
+    }
+
+    /**
+     * Matches the company's document unless the transaction side is already in its applied window.
+     */
+    static Query notYetApplied(Integer companyId, CompanyTransaction transaction) {
+        return Query.query(Criteria.where("companyId").is(companyId)
+                .and(appliedTransactionsField(transaction.rail())).ne(key(transaction)));
+    }
+
+    static String transactionIdField(Rail rail) {
+        return rail == Rail.SEPA ? "lastSepaTransactionId" : "lastSwiftTransactionId";
+    }
+
+    static String timestampField(Rail rail) {
+        return rail == Rail.SEPA ? "lastSepaTransactionTimestamp" : "lastSwiftTransactionTimestamp";
+    }
+
+    static String appliedTransactionsField(Rail rail) {
+        return rail == Rail.SEPA ? "appliedSepaTransactions" : "appliedSwiftTransactions";
+    }
+
+    /**
+     * Identifies a transaction side in the applied window.
+     */
+    static Document key(CompanyTransaction transaction) {
+        return new Document("id", transaction.transactionId()).append("incoming", transaction.incoming());
+    }
+
+    /**
+     * Adds the new transactions to the counts of currencies the company already has and appends the others.
+     */
+    private static Document countryDetails() {
+        var existing = new Document("$map", new Document("input", ifNull("$" + COUNTRY_DETAILS, List.of()))
+                .append("as", "detail")
+                .append("in", new Document("$mergeObjects", List.of("$$detail", new Document("numberOfTransactions",
+                        new Document("$add", List.of("$$detail.numberOfTransactions",
+                                countOf("$$detail.countryCode"))))))));
+        var added = new Document("$map", new Document("input", new Document("$setDifference", List.of(
+                        "$" + NEW_TRANSACTIONS + ".currency", ifNull("$" + COUNTRY_DETAILS + ".countryCode", List.of()))))
+                .append("as", "currency")
+                .append("in", new Document("countryCode", "$$currency")
+                        .append("numberOfTransactions", countOf("$$currency"))));
+        return new Document("$concatArrays", List.of(existing, added));
+    }
+
+    private static Document countOf(String currency) {
+        return new Document("$size", filter("$" + NEW_TRANSACTIONS, "transaction",
+                new Document("$eq", List.of("$$transaction.currency", currency))));
+    }
+
+    private static List<Document> toDocuments(List<CompanyTransaction> transactions) {
+        return transactions.stream()
+                .map(transaction -> new Document("key", key(transaction))
+                        .append("timestamp", TIMESTAMP_WRITER.convert(transaction.timestamp()))
+                        .append("amount", new Decimal128(transaction.signedAmountEur().round(MathContext.DECIMAL128)))
+                        .append("currency", transaction.currency()))
+                .toList();
+    }
+
+    private static Document filter(Object input, String as, Document condition) {
+        return new Document("$filter", new Document("input", input).append("as", as).append("cond", condition));
+    }
+
+    private static Document cond(Object condition, Object then, Object otherwise) {
+        return new Document("$cond", Arrays.asList(condition, then, otherwise));
+    }
+
+    private static Document ifNull(Object expression, Object replacement) {
+        return new Document("$ifNull", Arrays.asList(expression, replacement));
+    }
+
+    private static AggregationOperation stage(String operator, Object specification) {
+        var stage = new Document(operator, specification);
+        return context -> stage;
+    }
+}
@@ -0,0 +1,44 @@
+package com.example.cashflow_monitoring.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * Adaptive concurrency limits per downstream, see {@link ConcurrencyLimiters}.
+ */
+@ConfigurationProperties(prefix = "cashflow.concurrency")
+public record ConcurrencyLimitProperties(@DefaultValue Map<Downstream, LimitSettings> limits) {
+
+    public LimitSettings limit(Downstream downstream) {
+        return limits.getOrDefault(downstream, downstream.defaults);
+    }
+
+    public enum Downstream {
+        EXTERNAL_API(new LimitSettings(16, 1, 128, Duration.ofSeconds(1))),
+        MONGO(new LimitSettings(64, 4, 256, Duration.ofMillis(200))),
+        REDIS(new LimitSettings(64, 4, 512, Duration.ofMillis(50)));
+
+        private final LimitSettings defaults;
+
+        Downstream(LimitSettings defaults) {
+            this.defaults = defaults;
+        }
+    }
+
+    /**
+     * @param initialLimit     calls allowed in flight at startup
+     * @param minLimit         the limit never drops below this
+     * @param maxLimit         the limit never grows beyond this
+     * @param latencyThreshold calls slower than this count as a sign of overload and decrease the limit
+     */
+    public record LimitSettings(
+            @DefaultValue("16") int initialLimit,
+            @DefaultValue("1") int minLimit,
+            @DefaultValue("128") int maxLimit,
+            @DefaultValue("1s") Duration latencyThreshold
+    ) {
+    }
+}
@@ -0,0 +1,41 @@
+package com.example.cashflow_monitoring.config;
+
+import com.example.cashflow_monitoring.config.ConcurrencyLimitProperties.Downstream;
+import com.example.cashflow_monitoring.util.AdaptiveConcurrencyLimiter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * One adaptive concurrency limiter per downstream. Every fan-out against the external API, MongoDB or Redis runs
+ * its calls through the downstream's limiter, so the number of concurrent calls follows what the downstream
+ * currently sustains instead of the width of the fan-out.
+ */
+@Component
+public class ConcurrencyLimiters {
+
+    private final Map<Downstream, AdaptiveConcurrencyLimiter> limiters = new EnumMap<>(Downstream.class);
+
+    public ConcurrencyLimiters(ConcurrencyLimitProperties properties, MeterRegistry meterRegistry) {
+        for (var downstream : Downstream.values()) {
+            var settings = properties.limit(downstream);
+            limiters.put(downstream, new AdaptiveConcurrencyLimiter(downstream.name().toLowerCase().replace('_', '-'),
+                    settings.initialLimit(), settings.minLimit(), settings.maxLimit(), settings.latencyThreshold(),
+                    meterRegistry));
+        }
+    }
+
+    public AdaptiveConcurrencyLimiter externalApi() {
+        return limiters.get(Downstream.EXTERNAL_API);
+    }
+
+    public AdaptiveConcurrencyLimiter mongo() {
+        return limiters.get(Downstream.MONGO);
+    }
+
+    public AdaptiveConcurrencyLimiter redis() {
+        return limiters.get(Downstream.REDIS);
+    }
+}
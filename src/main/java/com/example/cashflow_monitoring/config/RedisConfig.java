@@ -1,12 +1,14 @@
 package com.example.cashflow_monitoring.config;
 
 import com.example.cashflow_monitoring.companyinfo.CompanyInfo;
+import com.example.cashflow_monitoring.companyinfo.CompanyInfoRedisSerializer;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.redis.connection.ReactiveRedisConnectionFactory;
 import org.springframework.data.redis.core.ReactiveRedisTemplate;
 import org.springframework.data.redis.serializer.GenericToStringSerializer;
-import org.springframework.data.redis.serializer.Jackson2JsonRedisSerializer;
 import org.springframework.data.redis.serializer.RedisSerializationContext;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
 
@@ -14,11 +16,15 @@ import org.springframework.data.redis.serializer.StringRedisSerializer;
 public class RedisConfig {
 
     @Bean
-    public ReactiveRedisTemplate<String, CompanyInfo> reactiveRedisTemplate(ReactiveRedisConnectionFactory reactiveRedisConnectionFactory) {
+    public ReactiveRedisTemplate<String, CompanyInfo> reactiveRedisTemplate(ReactiveRedisConnectionFactory reactiveRedisConnectionFactory,
+                                                                            ObjectMapper objectMapper,
+                                                                            @Value("${cashflow.company-info-cache.codec:BINARY}") CompanyInfoRedisSerializer.Format codec) {
+        var companyInfoSerializer = new CompanyInfoRedisSerializer(objectMapper, codec);
         var serializationContext = RedisSerializationContext
                 .<String, CompanyInfo>newSerializationContext(new StringRedisSerializer())
+                .value(companyInfoSerializer)
                 .hashKey(new GenericToStringSerializer<>(Integer.class))
-                .hashValue(new Jackson2JsonRedisSerializer<>(CompanyInfo.class))
+                .hashValue(companyInfoSerializer)
                 .build();
         return new ReactiveRedisTemplate<>(reactiveRedisConnectionFactory, serializationContext);
     }
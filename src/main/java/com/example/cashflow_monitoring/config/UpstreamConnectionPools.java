@@ -0,0 +1,74 @@
+package com.example.cashflow_monitoring.config;
+
+import com.example.cashflow_monitoring.config.UpstreamHttpProperties.Endpoint;
+import io.netty.channel.ChannelOption;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Owns the connections to the external API: one Reactor Netty pool per endpoint, so a burst of transaction pages
+ * cannot starve company or exchange rate lookups. Pools evict idle connections in the background and publish
+ * Micrometer gauges for active, idle and pending connections ({@code reactor.netty.connection.provider.*}, tagged
+ * with the pool name). Clients negotiate gzip, keep connections alive and prefer HTTP/2 when configured.
+ */
+@Component
+public class UpstreamConnectionPools {
+
+    private static final Pattern NUMERIC_SEGMENT = Pattern.compile("/\\d+");
+    private final Map<Endpoint, ConnectionProvider> connectionProviders = new EnumMap<>(Endpoint.class);
+    private final Map<Endpoint, WebClient.Builder> webClientBuilders = new EnumMap<>(Endpoint.class);
+
+    public UpstreamConnectionPools(WebClient.Builder webClientBuilder, UpstreamHttpProperties properties,
+                                   @Value("${external.db.api.base-url}") String externalApiBaseUrl) {
+        var secure = externalApiBaseUrl.startsWith("https");
+        for (var endpoint : Endpoint.values()) {
+            var connectionProvider = connectionProvider(endpoint, properties.pool(endpoint));
+            var httpClient = HttpClient.create(connectionProvider)
+                    .compress(properties.compression())
+                    .keepAlive(true)
+                    .option(ChannelOption.SO_KEEPALIVE, true)
+                    .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) properties.connectTimeout().toMillis())
+                    .metrics(true, uri -> NUMERIC_SEGMENT.matcher(uri).replaceAll("/{id}"));
+            if (properties.http2()) {
+                httpClient = httpClient.protocol(secure ? HttpProtocol.H2 : HttpProtocol.H2C, HttpProtocol.HTTP11);
+            }
+            connectionProviders.put(endpoint, connectionProvider);
+            webClientBuilders.put(endpoint, webClientBuilder.clone()
+                    .clientConnector(new ReactorClientHttpConnector(httpClient)));
+        }
+    }
+
+    /**
+     * Returns a new builder whose requests go through the endpoint's connection pool.
+     */
+    public WebClient.Builder webClientBuilder(Endpoint endpoint) {
+        return webClientBuilders.get(endpoint).clone();
+    }
+
+    @PreDestroy
+    public void dispose() {
+        connectionProviders.values().forEach(ConnectionProvider::dispose);
+    }
+
+    private static ConnectionProvider connectionProvider(Endpoint endpoint, UpstreamHttpProperties.PoolSettings settings) {
+        return ConnectionProvider.builder("upstream-" + endpoint.name().toLowerCase().replace('_', '-'))
+                .maxConnections(settings.maxConnections())
+                .pendingAcquireMaxCount(settings.pendingAcquireMaxCount())
+                .pendingAcquireTimeout(settings.pendingAcquireTimeout())
+                .maxIdleTime(settings.maxIdleTime())
+                .maxLifeTime(settings.maxLifeTime())
+                .evictInBackground(settings.maxIdleTime())
+                .metrics(true)
+                .build();
+    }
+}
@@ -0,0 +1,57 @@
+package com.example.cashflow_monitoring.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * HTTP client settings for the external API, see {@link UpstreamConnectionPools}.
+ *
+ * @param compression    advertise gzip and decompress responses
+ * @param http2          prefer HTTP/2 (h2c for plain http), falling back to HTTP/1.1
+ * @param connectTimeout timeout for establishing a connection
+ * @param pools          connection pool per endpoint
+ */
+@ConfigurationProperties(prefix = "cashflow.upstream.http")
+public record UpstreamHttpProperties(
+        @DefaultValue("true") boolean compression,
+        @DefaultValue("true") boolean http2,
+        @DefaultValue("5s") Duration connectTimeout,
+        @DefaultValue Map<Endpoint, PoolSettings> pools
+) {
+
+    public PoolSettings pool(Endpoint endpoint) {
+        return pools.getOrDefault(endpoint, endpoint.defaults);
+    }
+
+    public enum Endpoint {
+        DEFAULT(new PoolSettings(16, 256, Duration.ofSeconds(10), Duration.ofSeconds(30), Duration.ofMinutes(5))),
+        COMPANIES(new PoolSettings(32, 512, Duration.ofSeconds(10), Duration.ofSeconds(30), Duration.ofMinutes(5))),
+        EXCHANGE_RATES(new PoolSettings(4, 64, Duration.ofSeconds(10), Duration.ofSeconds(30), Duration.ofMinutes(5))),
+        TRANSACTIONS(new PoolSettings(128, 1024, Duration.ofSeconds(10), Duration.ofSeconds(30), Duration.ofMinutes(5)));
+
+        private final PoolSettings defaults;
+
+        Endpoint(PoolSettings defaults) {
+            this.defaults = defaults;
+        }
+    }
+
+    /**
+     * @param maxConnections         connections the pool opens at most
+     * @param pendingAcquireMaxCount requests allowed to wait for a connection, further requests fail fast
+     * @param pendingAcquireTimeout  how long a request waits for a connection
+     * @param maxIdleTime            idle connections are closed after this, evicted in the background
+     * @param maxLifeTime            connections are replaced after this, so load follows upstream scaling
+     */
+    public record PoolSettings(
+            @DefaultValue("16") int maxConnections,
+            @DefaultValue("256") int pendingAcquireMaxCount,
+            @DefaultValue("10s") Duration pendingAcquireTimeout,
+            @DefaultValue("30s") Duration maxIdleTime,
+            @DefaultValue("5m") Duration maxLifeTime
+    ) {
+    }
+}
@@ -10,8 +10,8 @@ import org.springframework.web.reactive.function.client.WebClient;
 public class WebClientConfig {
 
     @Bean
-    public WebClient webClient(WebClient.Builder builder) {
-        return builder
+    public WebClient webClient(UpstreamConnectionPools upstreamConnectionPools) {
+        return upstreamConnectionPools.webClientBuilder(UpstreamHttpProperties.Endpoint.DEFAULT)
                 .defaultHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
                 .build();
     }
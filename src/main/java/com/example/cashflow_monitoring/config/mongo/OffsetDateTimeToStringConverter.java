@@ -4,13 +4,21 @@ import org.springframework.core.convert.converter.Converter;
 import org.springframework.data.convert.WritingConverter;
 
 import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
 import java.time.format.DateTimeFormatter;
 
+/**
+ * Writes timestamps as fixed-width UTC strings, so string order in MongoDB matches chronological order. Timestamps
+ * stored in the earlier ISO-8601 format are rewritten by
+ * {@link com.example.cashflow_monitoring.companyinfo.CompanyInfoMigration} before ingestion starts.
+ */
 @WritingConverter
 public class OffsetDateTimeToStringConverter implements Converter<OffsetDateTime, String> {
 
+    private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ofPattern("uuuu-MM-dd'T'HH:mm:ss.SSSSSSXXX");
+
     @Override
     public String convert(OffsetDateTime source) {
-        return source.format(DateTimeFormatter.ISO_OFFSET_DATE_TIME);
+        return source.withOffsetSameInstant(ZoneOffset.UTC).format(FORMATTER);
     }
 }
@@ -1,7 +1,16 @@
 package com.example.cashflow_monitoring.exchangerate;
 
+import com.example.cashflow_monitoring.config.ConcurrencyLimiters;
+import com.example.cashflow_monitoring.config.UpstreamConnectionPools;
+import com.example.cashflow_monitoring.config.UpstreamHttpProperties.Endpoint;
 import com.example.cashflow_monitoring.exception.InternalServerErrorException;
+import com.example.cashflow_monitoring.util.AdaptiveConcurrencyLimiter;
+import com.example.cashflow_monitoring.util.CircuitBreaker;
+import com.example.cashflow_monitoring.util.Fetched;
+import com.example.cashflow_monitoring.util.SingleFlight;
 import com.example.cashflow_monitoring.util.UrlBuilderUtils;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
@@ -10,9 +19,11 @@ import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.client.WebClient;
 import reactor.core.publisher.Mono;
 
+import java.time.Duration;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
 
 @Service
 public class ExchangeRateClient {
@@ -20,14 +31,53 @@ public class ExchangeRateClient {
 
     private final WebClient webClient;
     private final UrlBuilderUtils urlBuilderUtils;
+    private final SingleFlight<String, List<ExchangeRateDTO>> singleFlight;
+    private final AdaptiveConcurrencyLimiter concurrencyLimiter;
+    private final CircuitBreaker circuitBreaker;
+    private final AtomicReference<Fetched<List<ExchangeRateDTO>>> lastKnownGood = new AtomicReference<>();
 
-    public ExchangeRateClient(WebClient.Builder webClientBuilder, UrlBuilderUtils urlBuilderUtils, @Value("${external.db.api.base-url}") String externalApiBaseUrl) {
-        this.webClient = webClientBuilder.baseUrl(externalApiBaseUrl).build();
+    public ExchangeRateClient(UpstreamConnectionPools upstreamConnectionPools, UrlBuilderUtils urlBuilderUtils, MeterRegistry meterRegistry,
+                              ConcurrencyLimiters concurrencyLimiters, @Value("${external.db.api.base-url}") String externalApiBaseUrl,
+                              @Value("${cashflow.upstream.circuit-breaker.failure-threshold:5}") int failureThreshold,
+                              @Value("${cashflow.upstream.circuit-breaker.open-duration:30s}") Duration openDuration) {
+        this.webClient = upstreamConnectionPools.webClientBuilder(Endpoint.EXCHANGE_RATES)
+                .baseUrl(externalApiBaseUrl)
+                .build();
         this.urlBuilderUtils = urlBuilderUtils;
+        this.singleFlight = new SingleFlight<>("exchange-rates", meterRegistry);
+        this.concurrencyLimiter = concurrencyLimiters.externalApi();
+        this.circuitBreaker = new CircuitBreaker("exchange-rates", failureThreshold, openDuration,
+                () -> fetchExchangeRates(urlBuilderUtils.buildExchangeRateUrl()), meterRegistry);
     }
 
-    public Mono<List<ExchangeRateDTO>> getExchangeRates() {
+    @PreDestroy
+    public void stopCircuitBreaker() {
+        circuitBreaker.dispose();
+    }
+
+    /**
+     * Fetches the current exchange rates. While the upstream fails or its circuit is open, the last rates fetched
+     * successfully are returned flagged as stale; without any, the failure is propagated.
+     */
+    public Mono<Fetched<List<ExchangeRateDTO>>> getExchangeRates() {
         var url = urlBuilderUtils.buildExchangeRateUrl();
+        return circuitBreaker.execute(
+                () -> singleFlight.execute(url, () -> concurrencyLimiter.run(() -> fetchExchangeRates(url)))
+                        .map(Fetched::fresh)
+                        .doOnNext(lastKnownGood::set),
+                this::lastKnownGood);
+    }
+
+    private Mono<Fetched<List<ExchangeRateDTO>>> lastKnownGood(Throwable error) {
+        var last = lastKnownGood.get();
+        if (last == null) {
+            return Mono.error(error);
+        }
+        log.warn("Serving exchange rates fetched at {}: {}", last.fetchedAt(), error.getMessage());
+        return Mono.just(last.asStale());
+    }
+
+    private Mono<List<ExchangeRateDTO>> fetchExchangeRates(String url) {
         return webClient.get()
                 .uri(url)
                 .retrieve()
@@ -0,0 +1,122 @@
+package com.example.cashflow_monitoring.exchangerate;
+
+import org.springframework.lang.Nullable;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Immutable, time-versioned EUR rates. Every currency keeps its rates in arrays sorted by the time they became
+ * effective, a lookup binary-searches the rate that was in effect at the given instant. Appending returns a new
+ * history and leaves this one untouched, so readers never need to synchronize.
+ */
+public final class ExchangeRateHistory {
+
+    public static final ExchangeRateHistory EMPTY = new ExchangeRateHistory(Map.of(), ExchangeRateSnapshot.EMPTY);
+
+    private final Map<String, CurrencyRates> ratesByCurrency;
+    private final ExchangeRateSnapshot latest;
+
+    private ExchangeRateHistory(Map<String, CurrencyRates> ratesByCurrency, ExchangeRateSnapshot latest) {
+        this.ratesByCurrency = ratesByCurrency;
+        this.latest = latest;
+    }
+
+    /**
+     * Returns a history with the snapshot appended. Snapshots must be appended in the order of their fetch time.
+     */
+    public ExchangeRateHistory append(ExchangeRateSnapshot snapshot) {
+        var appended = new HashMap<>(ratesByCurrency);
+        var effectiveAtMillis = snapshot.getFetchedAt().toEpochMilli();
+        snapshot.getEurRates().forEach((currency, eurRate) -> appended.merge(currency,
+                CurrencyRates.of(effectiveAtMillis, eurRate),
+                (existing, added) -> existing.append(effectiveAtMillis, eurRate)));
+        return new ExchangeRateHistory(Map.copyOf(appended), snapshot);
+    }
+
+    /**
+     * Returns a history with the rates of both histories. A rate both of them know at the same instant is kept once,
+     * the later of the two latest snapshots stays the latest.
+     */
+    public ExchangeRateHistory merge(ExchangeRateHistory other) {
+        if (other.isEmpty()) {
+            return this;
+        }
+        if (isEmpty()) {
+            return other;
+        }
+        var merged = new HashMap<>(ratesByCurrency);
+        other.ratesByCurrency.forEach((currency, rates) -> merged.merge(currency, rates, CurrencyRates::merge));
+        var later = other.latest.getFetchedAt().isAfter(latest.getFetchedAt()) ? other.latest : latest;
+        return new ExchangeRateHistory(Map.copyOf(merged), later);
+    }
+
+    /**
+     * Returns the EUR rate of the currency that was in effect at the given instant. Instants before the first known
+     * rate of the currency resolve to that first rate.
+     */
+    @Nullable
+    public BigDecimal getEurRate(String currency, Instant at) {
+        var rates = ratesByCurrency.get(currency);
+        return rates != null ? rates.at(at.toEpochMilli()) : null;
+    }
+
+    public ExchangeRateSnapshot getLatest() {
+        return latest;
+    }
+
+    public boolean isEmpty() {
+        return ratesByCurrency.isEmpty();
+    }
+
+    private record CurrencyRates(long[] effectiveAtMillis, BigDecimal[] eurRates) {
+
+        static CurrencyRates of(long effectiveAtMillis, BigDecimal eurRate) {
+            return new CurrencyRates(new long[]{effectiveAtMillis}, new BigDecimal[]{eurRate});
+        }
+
+        CurrencyRates append(long effectiveAt, BigDecimal eurRate) {
+            var size = effectiveAtMillis.length;
+            if (effectiveAtMillis[size - 1] >= effectiveAt) {
+                throw new IllegalArgumentException("Exchange rates must be appended in effective time order");
+            }
+            var times = Arrays.copyOf(effectiveAtMillis, size + 1);
+            var rates = Arrays.copyOf(eurRates, size + 1);
+            times[size] = effectiveAt;
+            rates[size] = eurRate;
+            return new CurrencyRates(times, rates);
+        }
+
+        CurrencyRates merge(CurrencyRates other) {
+            var times = new long[effectiveAtMillis.length + other.effectiveAtMillis.length];
+            var rates = new BigDecimal[times.length];
+            int i = 0, j = 0, size = 0;
+            while (i < effectiveAtMillis.length || j < other.effectiveAtMillis.length) {
+                var takeOther = i == effectiveAtMillis.length
+                        || (j < other.effectiveAtMillis.length && other.effectiveAtMillis[j] < effectiveAtMillis[i]);
+                if (takeOther) {
+                    times[size] = other.effectiveAtMillis[j];
+                    rates[size++] = other.eurRates[j++];
+                } else {
+                    if (j < other.effectiveAtMillis.length && other.effectiveAtMillis[j] == effectiveAtMillis[i]) {
+                        j++;
+                    }
+                    times[size] = effectiveAtMillis[i];
+                    rates[size++] = eurRates[i++];
+                }
+            }
+            return new CurrencyRates(Arrays.copyOf(times, size), Arrays.copyOf(rates, size));
+        }
+
+        BigDecimal at(long atMillis) {
+            var index = Arrays.binarySearch(effectiveAtMillis, atMillis);
+            if (index < 0) {
+                index = Math.max(0, -index - 2);
+            }
+            return eurRates[index];
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.example.cashflow_monitoring.exchangerate;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Exchange rates as fetched from the upstream, effective from {@link #getEffectiveAt()} until the next entry.
+ */
+@Document(collection = "exchange_rate_history")
+public class ExchangeRateHistoryEntry {
+    @Id
+    private String id;
+
+    @Indexed(unique = true)
+    private Instant effectiveAt;
+    private List<ExchangeRate> rates = new ArrayList<>();
+
+    public ExchangeRateHistoryEntry() {
+    }
+
+    public ExchangeRateHistoryEntry(Instant effectiveAt, List<ExchangeRate> rates) {
+        this.effectiveAt = effectiveAt;
+        this.rates = rates;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public Instant getEffectiveAt() {
+        return effectiveAt;
+    }
+
+    public void setEffectiveAt(Instant effectiveAt) {
+        this.effectiveAt = effectiveAt;
+    }
+
+    public List<ExchangeRate> getRates() {
+        return rates;
+    }
+
+    public void setRates(List<ExchangeRate> rates) {
+        this.rates = rates;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        ExchangeRateHistoryEntry that = (ExchangeRateHistoryEntry) o;
+        return Objects.equals(getId(), that.getId()) &&
+                Objects.equals(getEffectiveAt(), that.getEffectiveAt()) &&
+                Objects.equals(getRates(), that.getRates());
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(getId(), getEffectiveAt(), getRates());
+    }
+
+    @Override
+    public String toString() {
+        return "ExchangeRateHistoryEntry{" +
+                "id='" + id + '\'' +
+                ", effectiveAt=" + effectiveAt +
+                ", rates=" + rates +
+                '}';
+    }
+}
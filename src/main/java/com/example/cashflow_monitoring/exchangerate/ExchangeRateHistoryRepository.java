@@ -0,0 +1,10 @@
+package com.example.cashflow_monitoring.exchangerate;
+
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+
+@Repository
+public interface ExchangeRateHistoryRepository extends ReactiveMongoRepository<ExchangeRateHistoryEntry, String> {
+    Flux<ExchangeRateHistoryEntry> findAllByOrderByEffectiveAtAsc();
+}
@@ -2,15 +2,23 @@ package com.example.cashflow_monitoring.exchangerate;
 
 import com.example.cashflow_monitoring.exception.ExchangeRateNotFoundException;
 import com.example.cashflow_monitoring.transaction.Transaction;
+import com.example.cashflow_monitoring.util.BackgroundLoop;
+import com.example.cashflow_monitoring.util.Fetched;
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.lang.Nullable;
 import org.springframework.stereotype.Service;
-import reactor.core.publisher.Flux;
+import reactor.core.Disposable;
 import reactor.core.publisher.Mono;
 
 import java.math.BigDecimal;
+import java.time.Duration;
 import java.util.List;
-import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static com.example.cashflow_monitoring.util.Constants.EUR;
 
@@ -19,38 +27,114 @@ public class ExchangeRateService {
     private static final Logger log = LoggerFactory.getLogger(ExchangeRateService.class);
     private final ExchangeRateClient exchangeRateClient;
     private final ExchangeRateMapper exchangeRateMapper;
+    private final ExchangeRateHistoryRepository exchangeRateHistoryRepository;
+    private final Duration refreshInterval;
+    private final AtomicReference<ExchangeRateHistory> history = new AtomicReference<>(ExchangeRateHistory.EMPTY);
+    private final Mono<Void> loaded = Mono.defer(this::loadHistory).cache();
+    private final Mono<ExchangeRateHistory> firstRefresh = Mono.defer(this::refreshHistory)
+            .cacheInvalidateIf(refreshed -> refreshed.isEmpty() || refreshed != history.get());
+    @Nullable
+    private Disposable refreshTask;
 
-    public ExchangeRateService(ExchangeRateClient exchangeRateClient, ExchangeRateMapper exchangeRateMapper) {
+    public ExchangeRateService(ExchangeRateClient exchangeRateClient, ExchangeRateMapper exchangeRateMapper,
+                               ExchangeRateHistoryRepository exchangeRateHistoryRepository,
+                               @Value("${cashflow.exchange-rates.refresh-interval:15m}") Duration refreshInterval) {
         this.exchangeRateClient = exchangeRateClient;
         this.exchangeRateMapper = exchangeRateMapper;
+        this.exchangeRateHistoryRepository = exchangeRateHistoryRepository;
+        this.refreshInterval = refreshInterval;
+    }
+
+    /**
+     * Loads the persisted rate history and then refreshes it on a fixed schedule. A refresh whose rates differ from
+     * the latest known ones is persisted before it is used, so every conversion can be replayed. The current
+     * history is kept if a refresh fails.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void startRefresh() {
+        refreshTask = BackgroundLoop.start(Duration.ZERO, refreshInterval, () -> loaded.then(refreshHistory()),
+                e -> log.warn("Exchange rate refresh failed, keeping rates from {}",
+                        history.get().getLatest().getFetchedAt()));
+    }
+
+    @PreDestroy
+    public void stopRefresh() {
+        if (refreshTask != null) {
+            refreshTask.dispose();
+        }
     }
 
     public Mono<List<ExchangeRate>> getExchangeRates() {
+        return fetchExchangeRates().map(Fetched::value);
+    }
+
+    private Mono<Fetched<List<ExchangeRate>>> fetchExchangeRates() {
         return exchangeRateClient.getExchangeRates()
-                .flatMapMany(Flux::fromIterable)
-                .map(exchangeRateMapper::toEntity)
-                .collectList()
+                .map(fetched -> new Fetched<>(fetched.value().stream().map(exchangeRateMapper::toEntity).toList(),
+                        fetched.fetchedAt(), fetched.stale()))
                 .doOnError(e -> log.error("Error fetching exchange rates: {}", e.getMessage()));
     }
 
-    public <R extends Transaction> Mono<BigDecimal> getTotalTransactionAmount(R transaction, Mono<List<ExchangeRate>> exchangeRates) {
-        return exchangeRates.flatMap(rates -> calculateAmountInEUR(transaction, rates))
-                .doOnError(e -> log.error("Error calculating transaction amount: {}", e.getMessage()));
+    /**
+     * Returns the current rate history, waiting for the persisted history to be loaded and fetching the first rates
+     * if none are known yet. Concurrent callers share that first fetch, so it is recorded once. Stale rates served
+     * while the upstream is down only stand in for an empty history and are never recorded.
+     */
+    public Mono<ExchangeRateHistory> getHistory() {
+        return loaded.then(Mono.defer(() -> {
+            var current = history.get();
+            return current.isEmpty() ? firstRefresh : Mono.just(current);
+        }));
     }
 
-    private <R extends Transaction> Mono<BigDecimal> calculateAmountInEUR(R transaction, List<ExchangeRate> rates) {
+    private Mono<Void> loadHistory() {
+        return exchangeRateHistoryRepository.findAllByOrderByEffectiveAtAsc()
+                .map(entry -> ExchangeRateSnapshot.of(entry.getRates(), entry.getEffectiveAt()))
+                .reduce(ExchangeRateHistory.EMPTY, ExchangeRateHistory::append)
+                .doOnNext(persisted -> {
+                    var merged = history.updateAndGet(existing -> existing.merge(persisted));
+                    log.info("Loaded exchange rate history, latest rates from {}", merged.getLatest().getFetchedAt());
+                })
+                .onErrorResume(e -> {
+                    log.error("Could not load exchange rate history", e);
+                    return Mono.empty();
+                })
+                .then();
+    }
+
+    private Mono<ExchangeRateHistory> refreshHistory() {
+        return fetchExchangeRates().flatMap(result -> {
+            var rates = result.value();
+            var current = history.get();
+            if (result.stale()) {
+                return Mono.just(current.isEmpty() && !rates.isEmpty()
+                        ? ExchangeRateHistory.EMPTY.append(ExchangeRateSnapshot.of(rates, result.fetchedAt()))
+                        : current);
+            }
+            var fetched = ExchangeRateSnapshot.of(rates, result.fetchedAt());
+            if (fetched.isEmpty() || fetched.hasSameRates(current.getLatest())) {
+                return Mono.just(current);
+            }
+            return exchangeRateHistoryRepository.save(new ExchangeRateHistoryEntry(fetched.getFetchedAt(), rates))
+                    .map(saved -> history.updateAndGet(existing ->
+                            fetched.getFetchedAt().isAfter(existing.getLatest().getFetchedAt())
+                                    ? existing.append(fetched) : existing))
+                    .doOnNext(updated -> log.info("Recorded exchange rates for {} currencies effective from {}",
+                            fetched.size(), fetched.getFetchedAt()));
+        });
+    }
+
+    public <R extends Transaction> Mono<BigDecimal> getTotalTransactionAmount(R transaction) {
         if (EUR.equals(transaction.currency())) {
             return Mono.just(transaction.amount());
         }
-        return Mono.justOrEmpty(findExchangeRate(rates, transaction.currency()))
-                .map(exchangeRate -> transaction.amount().multiply(BigDecimal.valueOf(exchangeRate.eurRate())))
-                .switchIfEmpty(Mono.error(new ExchangeRateNotFoundException(transaction.currency())));
-    }
-
-    private Optional<ExchangeRate> findExchangeRate(List<ExchangeRate> rates, String currency) {
-        return rates.stream()
-                .filter(rate -> rate.currency().equals(currency))
-                .findFirst();
+        return getHistory()
+                .flatMap(rates -> {
+                    var eurRate = rates.getEurRate(transaction.currency(), transaction.timestamp().toInstant());
+                    return eurRate != null ? Mono.just(transaction.amount().multiply(eurRate))
+                            : Mono.<BigDecimal>error(new ExchangeRateNotFoundException(transaction.currency()));
+                })
+                .doOnError(e -> log.error("Error calculating transaction amount: {}", e.getMessage()));
     }
 
 }
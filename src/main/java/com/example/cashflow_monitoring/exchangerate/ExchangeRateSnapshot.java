@@ -0,0 +1,56 @@
+package com.example.cashflow_monitoring.exchangerate;
+
+import org.springframework.lang.Nullable;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable set of EUR rates keyed by currency code, with the rates already converted to {@link BigDecimal}.
+ */
+public final class ExchangeRateSnapshot {
+
+    public static final ExchangeRateSnapshot EMPTY = new ExchangeRateSnapshot(Map.of(), Instant.EPOCH);
+
+    private final Map<String, BigDecimal> eurRates;
+    private final Instant fetchedAt;
+
+    private ExchangeRateSnapshot(Map<String, BigDecimal> eurRates, Instant fetchedAt) {
+        this.eurRates = eurRates;
+        this.fetchedAt = fetchedAt;
+    }
+
+    public static ExchangeRateSnapshot of(List<ExchangeRate> exchangeRates, Instant fetchedAt) {
+        var eurRates = new HashMap<String, BigDecimal>(exchangeRates.size() * 2);
+        exchangeRates.forEach(rate -> eurRates.putIfAbsent(rate.currency(), BigDecimal.valueOf(rate.eurRate())));
+        return new ExchangeRateSnapshot(Map.copyOf(eurRates), fetchedAt);
+    }
+
+    @Nullable
+    public BigDecimal getEurRate(String currency) {
+        return eurRates.get(currency);
+    }
+
+    public Map<String, BigDecimal> getEurRates() {
+        return eurRates;
+    }
+
+    public boolean hasSameRates(ExchangeRateSnapshot other) {
+        return eurRates.equals(other.eurRates);
+    }
+
+    public Instant getFetchedAt() {
+        return fetchedAt;
+    }
+
+    public int size() {
+        return eurRates.size();
+    }
+
+    public boolean isEmpty() {
+        return eurRates.isEmpty();
+    }
+}
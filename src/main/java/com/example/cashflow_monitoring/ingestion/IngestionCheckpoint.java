@@ -0,0 +1,115 @@
+package com.example.cashflow_monitoring.ingestion;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.util.Objects;
+import java.util.UUID;
+
+/**
+ * Resume point of one rail's ingestion stream. There is exactly one document per rail, keyed by the rail name.
+ * Transactions after the stored-from cursor up to the resume cursor are kept in the local transaction store.
+ */
+@Document(collection = "ingestion_checkpoints")
+public class IngestionCheckpoint {
+    @Id
+    private String id;
+
+    private OffsetDateTime cursorTimestamp;
+    private UUID cursorId;
+    private long batchSequence;
+    private Instant updatedAt;
+    private OffsetDateTime storedFromTimestamp;
+    private UUID storedFromId;
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public OffsetDateTime getCursorTimestamp() {
+        return cursorTimestamp;
+    }
+
+    public void setCursorTimestamp(OffsetDateTime cursorTimestamp) {
+        this.cursorTimestamp = cursorTimestamp;
+    }
+
+    public UUID getCursorId() {
+        return cursorId;
+    }
+
+    public void setCursorId(UUID cursorId) {
+        this.cursorId = cursorId;
+    }
+
+    public long getBatchSequence() {
+        return batchSequence;
+    }
+
+    public void setBatchSequence(long batchSequence) {
+        this.batchSequence = batchSequence;
+    }
+
+    public Instant getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(Instant updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+
+    public OffsetDateTime getStoredFromTimestamp() {
+        return storedFromTimestamp;
+    }
+
+    public void setStoredFromTimestamp(OffsetDateTime storedFromTimestamp) {
+        this.storedFromTimestamp = storedFromTimestamp;
+    }
+
+    public UUID getStoredFromId() {
+        return storedFromId;
+    }
+
+    public void setStoredFromId(UUID storedFromId) {
+        this.storedFromId = storedFromId;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        IngestionCheckpoint that = (IngestionCheckpoint) o;
+        return getBatchSequence() == that.getBatchSequence() &&
+                Objects.equals(getId(), that.getId()) &&
+                Objects.equals(getCursorTimestamp(), that.getCursorTimestamp()) &&
+                Objects.equals(getCursorId(), that.getCursorId()) &&
+                Objects.equals(getUpdatedAt(), that.getUpdatedAt()) &&
+                Objects.equals(getStoredFromTimestamp(), that.getStoredFromTimestamp()) &&
+                Objects.equals(getStoredFromId(), that.getStoredFromId());
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(getId(), getCursorTimestamp(), getCursorId(), getBatchSequence(), getUpdatedAt(),
+                getStoredFromTimestamp(), getStoredFromId());
+    }
+
+    @Override
+    public String toString() {
+        return "IngestionCheckpoint{" +
+                "id='" + id + '\'' +
+                ", cursorTimestamp=" + cursorTimestamp +
+                ", cursorId=" + cursorId +
+                ", batchSequence=" + batchSequence +
+                ", updatedAt=" + updatedAt +
+                ", storedFromTimestamp=" + storedFromTimestamp +
+                ", storedFromId=" + storedFromId +
+                '}';
+    }
+}
@@ -0,0 +1,8 @@
+package com.example.cashflow_monitoring.ingestion;
+
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface IngestionCheckpointRepository extends ReactiveMongoRepository<IngestionCheckpoint, String> {
+}
@@ -0,0 +1,101 @@
+package com.example.cashflow_monitoring.ingestion;
+
+import com.example.cashflow_monitoring.companyinfo.CompanyInfoService;
+import com.example.cashflow_monitoring.transaction.Rail;
+import com.example.cashflow_monitoring.transaction.RailCursor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import java.time.OffsetDateTime;
+import java.util.UUID;
+
+@Service
+public class IngestionCheckpointService {
+
+    private static final Logger log = LoggerFactory.getLogger(IngestionCheckpointService.class);
+    private static final String ID = "_id";
+    private static final String STORED_FROM_TIMESTAMP = "storedFromTimestamp";
+    private static final String STORED_FROM_ID = "storedFromId";
+    private final IngestionCheckpointRepository ingestionCheckpointRepository;
+    private final CompanyInfoService companyInfoService;
+    private final ReactiveMongoTemplate reactiveMongoTemplate;
+
+    public IngestionCheckpointService(IngestionCheckpointRepository ingestionCheckpointRepository,
+                                      CompanyInfoService companyInfoService,
+                                      ReactiveMongoTemplate reactiveMongoTemplate) {
+        this.ingestionCheckpointRepository = ingestionCheckpointRepository;
+        this.companyInfoService = companyInfoService;
+        this.reactiveMongoTemplate = reactiveMongoTemplate;
+    }
+
+    public Mono<IngestionCheckpoint> getCheckpoint(Rail rail) {
+        return ingestionCheckpointRepository.findById(rail.name());
+    }
+
+    /**
+     * Returns the cursor the rail's ingestion resumes from. Before the first checkpoint of a rail is written
+     * the resume point is derived once from the newest transaction recorded in company info.
+     */
+    public Mono<RailCursor> getResumeCursor(Rail rail) {
+        return getCheckpoint(rail)
+                .map(checkpoint -> RailCursor.of(checkpoint.getCursorTimestamp(), checkpoint.getCursorId()))
+                .switchIfEmpty(Mono.defer(() -> getLegacyResumeCursor(rail)));
+    }
+
+    /**
+     * Moves the rail's checkpoint to the given cursor in a single-document upsert. Must only be called once the
+     * batch ending at the cursor has been applied. The checkpoint is not written atomically with the batch, a crash
+     * in between replays that batch on the next run; the replay is harmless because storing a transaction is an
+     * upsert and applying one skips the transaction sides its company already applied, see
+     * {@link com.example.cashflow_monitoring.companyinfo.CompanyInfoService#applyTransaction}.
+     */
+    public Mono<Void> advance(Rail rail, RailCursor cursor) {
+        var query = Query.query(Criteria.where(ID).is(rail.name()));
+        var update = new Update()
+                .set("cursorTimestamp", OffsetDateTime.parse(cursor.afterTimestamp()))
+                .set("cursorId", UUID.fromString(cursor.afterUuid()))
+                .inc("batchSequence", 1)
+                .currentDate("updatedAt");
+        return reactiveMongoTemplate.upsert(query, update, IngestionCheckpoint.class)
+                .doOnError(e -> log.error("Error advancing {} checkpoint to {}", rail, cursor, e))
+                .then();
+    }
+
+    /**
+     * Records the cursor after which the rail's transactions are kept in the local transaction store, unless the
+     * checkpoint already has one. A rail without a checkpoint gets one at the given cursor.
+     */
+    public Mono<Void> initStoredFrom(Rail rail, RailCursor cursor) {
+        var timestamp = OffsetDateTime.parse(cursor.afterTimestamp());
+        var id = UUID.fromString(cursor.afterUuid());
+        var insert = new Update()
+                .setOnInsert("cursorTimestamp", timestamp)
+                .setOnInsert("cursorId", id)
+                .setOnInsert(STORED_FROM_TIMESTAMP, timestamp)
+                .setOnInsert(STORED_FROM_ID, id);
+        var backfill = Query.query(Criteria.where(ID).is(rail.name()).and(STORED_FROM_TIMESTAMP).exists(false));
+        return reactiveMongoTemplate.upsert(Query.query(Criteria.where(ID).is(rail.name())), insert, IngestionCheckpoint.class)
+                .then(reactiveMongoTemplate.updateFirst(backfill,
+                        Update.update(STORED_FROM_TIMESTAMP, timestamp).set(STORED_FROM_ID, id), IngestionCheckpoint.class))
+                .doOnError(e -> log.error("Error recording {} transaction store start at {}", rail, cursor, e))
+                .then();
+    }
+
+    private Mono<RailCursor> getLegacyResumeCursor(Rail rail) {
+        log.info("No ingestion checkpoint for {}, resuming from company info", rail);
+        return switch (rail) {
+            case SEPA -> companyInfoService.findTopByOrderByLastSepaTransactionTimestampDesc()
+                    .map(companyInfo -> RailCursor.of(companyInfo.getLastSepaTransactionTimestamp(),
+                            companyInfo.getLastSepaTransactionId()));
+            case SWIFT -> companyInfoService.findTopByOrderByLastSwiftTransactionTimestampDesc()
+                    .map(companyInfo -> RailCursor.of(companyInfo.getLastSwiftTransactionTimestamp(),
+                            companyInfo.getLastSwiftTransactionId()));
+        };
+    }
+}
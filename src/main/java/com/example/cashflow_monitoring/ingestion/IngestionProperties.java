@@ -0,0 +1,31 @@
+package com.example.cashflow_monitoring.ingestion;
+
+import com.example.cashflow_monitoring.transaction.Rail;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * Per-rail ingestion settings. Every rail runs its own ingestion stream, so a slow or failing rail only
+ * ever throttles itself.
+ */
+@ConfigurationProperties(prefix = "cashflow.ingestion")
+public record IngestionProperties(@DefaultValue Map<Rail, RailSettings> rails) {
+
+    public RailSettings rail(Rail rail) {
+        return rails.getOrDefault(rail, RailSettings.DEFAULTS);
+    }
+
+    /**
+     * @param concurrency   maximum number of transactions of one batch applied concurrently
+     * @param fetchInterval minimum delay before fetching the next page, limits the rate of upstream calls
+     */
+    public record RailSettings(
+            @DefaultValue("256") int concurrency,
+            @DefaultValue("0ms") Duration fetchInterval
+    ) {
+        static final RailSettings DEFAULTS = new RailSettings(256, Duration.ZERO);
+    }
+}
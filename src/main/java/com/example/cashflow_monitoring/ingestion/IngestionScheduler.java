@@ -0,0 +1,189 @@
+package com.example.cashflow_monitoring.ingestion;
+
+import com.example.cashflow_monitoring.transaction.Rail;
+import com.example.cashflow_monitoring.transaction.RailIngestionResult;
+import com.example.cashflow_monitoring.transaction.RailRunOutcome;
+import com.example.cashflow_monitoring.transaction.TransactionProcessingService;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.Disposables;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Runs the ingestion of every rail continuously in the background. Each rail polls on its own: immediately again
+ * while it still has a backlog, after the minimum interval once it has caught up, and with an exponentially growing
+ * interval while its polls come back empty or fail. At most one loop runs per instance.
+ * <p>
+ * Every ingestion run, from the loop or a manual {@link #runOnce}, goes through a per-rail gate, so a rail is never
+ * ingested twice at the same time. A run that finds its rail busy is skipped, not queued.
+ */
+@Component
+public class IngestionScheduler {
+
+    private static final Logger log = LoggerFactory.getLogger(IngestionScheduler.class);
+    private final TransactionProcessingService transactionProcessingService;
+    private final AtomicReference<Disposable.Swap> loop = new AtomicReference<>();
+    private final Map<Rail, RailPollStatus> railStatuses = new ConcurrentHashMap<>();
+    private final Map<Rail, AtomicBoolean> railGates = new EnumMap<>(Rail.class);
+    private final int batchesPerPoll;
+    private final Duration minPollInterval;
+    private final Duration maxPollInterval;
+    private final boolean autoStart;
+
+    public IngestionScheduler(TransactionProcessingService transactionProcessingService,
+                              @Value("${cashflow.ingestion.scheduler.batches-per-poll:20}") int batchesPerPoll,
+                              @Value("${cashflow.ingestion.scheduler.min-poll-interval:1s}") Duration minPollInterval,
+                              @Value("${cashflow.ingestion.scheduler.max-poll-interval:30s}") Duration maxPollInterval,
+                              @Value("${cashflow.ingestion.scheduler.auto-start:false}") boolean autoStart) {
+        this.transactionProcessingService = transactionProcessingService;
+        this.batchesPerPoll = batchesPerPoll;
+        this.minPollInterval = minPollInterval;
+        this.maxPollInterval = maxPollInterval;
+        this.autoStart = autoStart;
+        for (var rail : Rail.values()) {
+            railGates.put(rail, new AtomicBoolean());
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void startOnReady() {
+        if (autoStart) {
+            start();
+        }
+    }
+
+    /**
+     * Starts the ingestion loop unless it is already running.
+     *
+     * @return whether this call started the loop
+     */
+    public boolean start() {
+        var swap = Disposables.swap();
+        if (!loop.compareAndSet(null, swap)) {
+            return false;
+        }
+        log.info("Starting ingestion scheduler");
+        swap.update(Flux.merge(pollLoop(Rail.SEPA), pollLoop(Rail.SWIFT))
+                .subscribe(null, e -> {
+                    log.error("Ingestion scheduler stopped unexpectedly", e);
+                    loop.compareAndSet(swap, null);
+                }));
+        return true;
+    }
+
+    /**
+     * Stops the ingestion loop. A batch that is being applied is cancelled, its checkpoint is not advanced.
+     *
+     * @return whether the loop was running
+     */
+    public boolean stop() {
+        var current = loop.getAndSet(null);
+        if (current == null) {
+            return false;
+        }
+        log.info("Stopping ingestion scheduler");
+        current.dispose();
+        return true;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        stop();
+    }
+
+    public boolean isRunning() {
+        return loop.get() != null;
+    }
+
+    public IngestionStatus getStatus() {
+        return new IngestionStatus(isRunning(), new TreeMap<>(railStatuses));
+    }
+
+    /**
+     * Ingests up to {@code maxBatches} batches of every rail once, concurrently. A rail that is being ingested by the
+     * loop or another manual run is skipped, a failing rail does not cancel the others.
+     */
+    public Mono<List<RailRunOutcome>> runOnce(int maxBatches) {
+        return Flux.fromArray(Rail.values())
+                .flatMap(rail -> runExclusive(rail, maxBatches)
+                        .map(RailRunOutcome::succeeded)
+                        .switchIfEmpty(Mono.fromSupplier(() -> RailRunOutcome.skipped(rail)))
+                        .onErrorResume(e -> Mono.just(RailRunOutcome.failed(rail, e))))
+                .collectSortedList(Comparator.comparing(RailRunOutcome::rail));
+    }
+
+    /**
+     * Runs the rail's ingestion while holding its gate, or completes empty if the gate is held by another run.
+     */
+    private Mono<RailIngestionResult> runExclusive(Rail rail, int maxBatches) {
+        return Mono.defer(() -> {
+            var gate = railGates.get(rail);
+            if (!gate.compareAndSet(false, true)) {
+                return Mono.empty();
+            }
+            return transactionProcessingService.ingestNewTransactions(rail, maxBatches)
+                    .doFinally(signal -> gate.set(false));
+        });
+    }
+
+    private Flux<RailPollStatus> pollLoop(Rail rail) {
+        return poll(rail, Duration.ZERO)
+                .expand(status -> poll(rail, status.nextPollDelay()).delaySubscription(status.nextPollDelay()))
+                .doOnNext(status -> railStatuses.put(rail, status));
+    }
+
+    private Mono<RailPollStatus> poll(Rail rail, Duration previousDelay) {
+        return runExclusive(rail, batchesPerPoll)
+                .map(result -> new RailPollStatus(Instant.now(), result, nextPollDelay(result, previousDelay), null))
+                .switchIfEmpty(Mono.fromSupplier(() -> new RailPollStatus(Instant.now(), null, minPollInterval,
+                        RailRunOutcome.skipped(rail).error())))
+                .onErrorResume(e -> {
+                    log.error("Ingestion poll of {} failed", rail, e);
+                    return Mono.just(new RailPollStatus(Instant.now(), null, backOff(previousDelay), e.getMessage()));
+                });
+    }
+
+    private Duration nextPollDelay(RailIngestionResult result, Duration previousDelay) {
+        if (!result.caughtUp()) {
+            return Duration.ZERO;
+        }
+        return result.transactionCount() > 0 ? minPollInterval : backOff(previousDelay);
+    }
+
+    private Duration backOff(Duration previousDelay) {
+        var doubled = previousDelay.multipliedBy(2);
+        if (doubled.compareTo(minPollInterval) < 0) {
+            return minPollInterval;
+        }
+        return doubled.compareTo(maxPollInterval) > 0 ? maxPollInterval : doubled;
+    }
+
+    public record IngestionStatus(boolean running, Map<Rail, RailPollStatus> rails) {
+    }
+
+    /**
+     * @param lastResult outcome of the last poll, {@code null} if it failed or was skipped
+     * @param error      error message of the last poll, {@code null} if it succeeded
+     */
+    public record RailPollStatus(Instant polledAt, RailIngestionResult lastResult, Duration nextPollDelay,
+                                 String error) {
+    }
+}
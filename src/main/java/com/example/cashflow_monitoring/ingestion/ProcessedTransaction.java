@@ -0,0 +1,81 @@
+package com.example.cashflow_monitoring.ingestion;
+
+import com.example.cashflow_monitoring.transaction.Rail;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+import java.util.Objects;
+import java.util.UUID;
+
+/**
+ * Exact record of a transaction whose balance changes have been applied.
+ */
+@Document(collection = "processed_transactions")
+public class ProcessedTransaction {
+    @Id
+    private UUID id;
+
+    private Rail rail;
+
+    @Indexed
+    private Instant processedAt;
+
+    public ProcessedTransaction() {
+    }
+
+    public ProcessedTransaction(UUID id, Rail rail, Instant processedAt) {
+        this.id = id;
+        this.rail = rail;
+        this.processedAt = processedAt;
+    }
+
+    public UUID getId() {
+        return id;
+    }
+
+    public void setId(UUID id) {
+        this.id = id;
+    }
+
+    public Rail getRail() {
+        return rail;
+    }
+
+    public void setRail(Rail rail) {
+        this.rail = rail;
+    }
+
+    public Instant getProcessedAt() {
+        return processedAt;
+    }
+
+    public void setProcessedAt(Instant processedAt) {
+        this.processedAt = processedAt;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        ProcessedTransaction that = (ProcessedTransaction) o;
+        return Objects.equals(getId(), that.getId()) &&
+                getRail() == that.getRail() &&
+                Objects.equals(getProcessedAt(), that.getProcessedAt());
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(getId(), getRail(), getProcessedAt());
+    }
+
+    @Override
+    public String toString() {
+        return "ProcessedTransaction{" +
+                "id=" + id +
+                ", rail=" + rail +
+                ", processedAt=" + processedAt +
+                '}';
+    }
+}
@@ -0,0 +1,239 @@
+package com.example.cashflow_monitoring.ingestion;
+
+import com.example.cashflow_monitoring.transaction.Rail;
+import com.example.cashflow_monitoring.transaction.Transaction;
+import com.example.cashflow_monitoring.util.BackgroundLoop;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.index.MongoPersistentEntityIndexResolver;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.stream.Collectors;
+
+/**
+ * Drops transactions that have already been applied. Every id is first checked against an in-memory Bloom filter,
+ * only ids the filter reports as possibly processed are looked up in the exact {@code processed_transactions}
+ * collection, so a batch of new transactions costs no database read at all.
+ * <p>
+ * On startup the filter is restored from its last disk snapshot and the ids processed since are replayed from
+ * MongoDB. Until that has finished, or if it fails, the filter is bypassed and every id is checked exactly; ids marked
+ * processed during the rebuild are added to the filter once it is published.
+ * <p>
+ * The filter grows in layers, see {@link ScalableTransactionIdBloomFilter}, so it scales to hundreds of millions of ids
+ * without saturating while heap is only spent on ids actually processed. At a 1% false positive probability it takes
+ * about 1.8 bytes per id: the first layer of {@code cashflow.ingestion.dedup.initial-capacity} ids, 10M by default,
+ * takes 16 MB, and 300M ids take about 560 MB.
+ */
+@Component
+public class ProcessedTransactionFilter {
+
+    private static final Logger log = LoggerFactory.getLogger(ProcessedTransactionFilter.class);
+    private static final String ID = "_id";
+    private static final String PROCESSED_AT = "processedAt";
+    private static final Duration SNAPSHOT_REPLAY_MARGIN = Duration.ofMinutes(5);
+    private final ReactiveMongoTemplate reactiveMongoTemplate;
+    private final long initialCapacity;
+    private final double falsePositiveProbability;
+    private final Path snapshotFile;
+    private final Duration snapshotInterval;
+    private final Queue<UUID> markedDuringRebuild = new ConcurrentLinkedQueue<>();
+    private volatile boolean rebuilding = true;
+    @Nullable
+    private volatile ScalableTransactionIdBloomFilter bloomFilter;
+    @Nullable
+    private Disposable snapshotTask;
+
+    public ProcessedTransactionFilter(ReactiveMongoTemplate reactiveMongoTemplate,
+                                      @Value("${cashflow.ingestion.dedup.initial-capacity:10000000}") long initialCapacity,
+                                      @Value("${cashflow.ingestion.dedup.false-positive-probability:0.01}") double falsePositiveProbability,
+                                      @Value("${cashflow.ingestion.dedup.snapshot-file:data/processed-transactions.bloom}") Path snapshotFile,
+                                      @Value("${cashflow.ingestion.dedup.snapshot-interval:5m}") Duration snapshotInterval) {
+        this.reactiveMongoTemplate = reactiveMongoTemplate;
+        this.initialCapacity = initialCapacity;
+        this.falsePositiveProbability = falsePositiveProbability;
+        this.snapshotFile = snapshotFile;
+        this.snapshotInterval = snapshotInterval;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void ensureIndexes() {
+        var indexResolver = new MongoPersistentEntityIndexResolver(reactiveMongoTemplate.getConverter().getMappingContext());
+        var indexOps = reactiveMongoTemplate.indexOps(ProcessedTransaction.class);
+        Flux.fromIterable(indexResolver.resolveIndexFor(ProcessedTransaction.class))
+                .concatMap(indexOps::ensureIndex)
+                .subscribe(index -> log.debug("Ensured processed transaction index {}", index),
+                        e -> log.error("Could not create processed transaction indexes", e));
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        rebuild().subscribe();
+        snapshotTask = BackgroundLoop.start(snapshotInterval, snapshotInterval, this::snapshot,
+                e -> log.warn("Could not write processed transaction filter snapshot {}", snapshotFile, e));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (snapshotTask != null) {
+            snapshotTask.dispose();
+        }
+        snapshot().block(Duration.ofMinutes(1));
+    }
+
+    /**
+     * Returns the transactions of the batch that have not been processed yet, without duplicates within the batch.
+     */
+    public <R extends Transaction> Mono<List<R>> filterUnprocessed(List<R> transactions) {
+        return Mono.defer(() -> {
+            var unique = new LinkedHashMap<UUID, R>();
+            transactions.forEach(transaction -> unique.putIfAbsent(transaction.id(), transaction));
+            var filter = bloomFilter;
+            var candidates = unique.keySet().stream()
+                    .filter(id -> filter == null || filter.mightContain(id))
+                    .toList();
+            if (candidates.isEmpty()) {
+                return Mono.just(new ArrayList<>(unique.values()));
+            }
+            var query = Query.query(Criteria.where(ID).in(candidates));
+            query.fields().include(ID);
+            return reactiveMongoTemplate.find(query, ProcessedTransaction.class)
+                    .map(ProcessedTransaction::getId)
+                    .collect(Collectors.toCollection(HashSet::new))
+                    .map(processed -> {
+                        if (!processed.isEmpty()) {
+                            log.info("Skipping {} already processed transactions", processed.size());
+                        }
+                        return unique.values().stream()
+                                .filter(transaction -> !processed.contains(transaction.id()))
+                                .toList();
+                    });
+        });
+    }
+
+    /**
+     * Records the transactions as processed. Must only be called once their balance changes have been applied.
+     */
+    public Mono<Void> markProcessed(Rail rail, List<? extends Transaction> transactions) {
+        if (transactions.isEmpty()) {
+            return Mono.empty();
+        }
+        var processedAt = Instant.now();
+        var bulkOps = reactiveMongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, ProcessedTransaction.class);
+        transactions.forEach(transaction -> bulkOps.upsert(
+                Query.query(Criteria.where(ID).is(transaction.id())),
+                new Update().setOnInsert("rail", rail).setOnInsert(PROCESSED_AT, processedAt)));
+        return bulkOps.execute()
+                .doOnSuccess(result -> {
+                    var filter = bloomFilter;
+                    if (filter == null && rebuilding) {
+                        transactions.forEach(transaction -> markedDuringRebuild.add(transaction.id()));
+                        filter = bloomFilter;
+                    }
+                    if (filter != null) {
+                        var published = filter;
+                        transactions.forEach(transaction -> published.put(transaction.id()));
+                    }
+                })
+                .then();
+    }
+
+    private Mono<Void> rebuild() {
+        return Mono.fromCallable(this::loadSnapshot)
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMap(snapshot -> replay(snapshot.filter(),
+                        Instant.ofEpochMilli(snapshot.takenAtMillis()).minus(SNAPSHOT_REPLAY_MARGIN)))
+                .switchIfEmpty(Mono.defer(() -> replay(
+                        ScalableTransactionIdBloomFilter.create(initialCapacity, falsePositiveProbability), null)))
+                .doOnNext(filter -> {
+                    bloomFilter = filter;
+                    UUID id;
+                    while ((id = markedDuringRebuild.poll()) != null) {
+                        filter.put(id);
+                    }
+                    log.info("Processed transaction filter ready");
+                })
+                .onErrorResume(e -> {
+                    log.error("Could not rebuild processed transaction filter, checking every id against MongoDB", e);
+                    return Mono.empty();
+                })
+                .doFinally(signal -> {
+                    rebuilding = false;
+                    markedDuringRebuild.clear();
+                })
+                .then();
+    }
+
+    private Mono<ScalableTransactionIdBloomFilter> replay(ScalableTransactionIdBloomFilter filter, @Nullable Instant since) {
+        var query = since == null ? new Query() : Query.query(Criteria.where(PROCESSED_AT).gte(since));
+        query.fields().include(ID);
+        return reactiveMongoTemplate.find(query, ProcessedTransaction.class)
+                .doOnNext(processedTransaction -> filter.put(processedTransaction.getId()))
+                .count()
+                .doOnNext(count -> log.info("Replayed {} processed transaction ids into the filter", count))
+                .thenReturn(filter);
+    }
+
+    @Nullable
+    private ScalableTransactionIdBloomFilter.Snapshot loadSnapshot() {
+        if (!Files.exists(snapshotFile)) {
+            return null;
+        }
+        try {
+            var snapshot = ScalableTransactionIdBloomFilter.readSnapshot(snapshotFile);
+            if (!snapshot.filter().hasSizing(initialCapacity, falsePositiveProbability)) {
+                log.info("Processed transaction filter sizing changed, discarding snapshot {}", snapshotFile);
+                return null;
+            }
+            return snapshot;
+        } catch (IOException e) {
+            log.warn("Could not read processed transaction filter snapshot {}", snapshotFile, e);
+            return null;
+        }
+    }
+
+    private Mono<Void> snapshot() {
+        return Mono.fromCallable(() -> {
+                    var filter = bloomFilter;
+                    if (filter != null) {
+                        var takenAtMillis = System.currentTimeMillis();
+                        if (snapshotFile.getParent() != null) {
+                            Files.createDirectories(snapshotFile.getParent());
+                        }
+                        filter.writeSnapshot(snapshotFile, takenAtMillis);
+                    }
+                    return true;
+                })
+                .subscribeOn(Schedulers.boundedElastic())
+                .onErrorResume(e -> {
+                    log.warn("Could not write processed transaction filter snapshot {}", snapshotFile, e);
+                    return Mono.empty();
+                })
+                .then();
+    }
+}
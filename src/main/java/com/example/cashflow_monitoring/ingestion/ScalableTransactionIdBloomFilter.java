@@ -0,0 +1,154 @@
+package com.example.cashflow_monitoring.ingestion;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bloom filter over transaction ids that grows with the ids added instead of being sized up front. Ids go into the
+ * newest layer; once it holds its capacity a layer with twice the capacity and a tighter false positive probability
+ * is added. The layer probabilities form a geometric series, so the combined false positive probability stays below
+ * the configured one however many ids are added, and heap is only spent on ids actually seen.
+ */
+public final class ScalableTransactionIdBloomFilter {
+
+    private static final int SNAPSHOT_MAGIC = 0x53584246;
+    private static final int SNAPSHOT_HEADER_BYTES = Integer.BYTES + Long.BYTES + Double.BYTES + Long.BYTES + Integer.BYTES;
+    private static final double TIGHTENING_RATIO = 0.8;
+
+    private final long initialCapacity;
+    private final double falsePositiveProbability;
+    private volatile List<Layer> layers;
+
+    private ScalableTransactionIdBloomFilter(long initialCapacity, double falsePositiveProbability, List<Layer> layers) {
+        this.initialCapacity = initialCapacity;
+        this.falsePositiveProbability = falsePositiveProbability;
+        this.layers = layers;
+    }
+
+    /**
+     * Creates a filter whose first layer holds {@code initialCapacity} ids.
+     */
+    public static ScalableTransactionIdBloomFilter create(long initialCapacity, double falsePositiveProbability) {
+        if (initialCapacity <= 0 || falsePositiveProbability <= 0 || falsePositiveProbability >= 1) {
+            throw new IllegalArgumentException("Invalid Bloom filter sizing: " + initialCapacity + ", " + falsePositiveProbability);
+        }
+        var filter = new ScalableTransactionIdBloomFilter(initialCapacity, falsePositiveProbability, List.of());
+        filter.layers = List.of(filter.newLayer(0));
+        return filter;
+    }
+
+    public boolean mightContain(UUID id) {
+        for (var layer : layers) {
+            if (layer.filter().mightContain(id)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public void put(UUID id) {
+        if (mightContain(id)) {
+            return;
+        }
+        var current = layers;
+        var newest = current.get(current.size() - 1);
+        newest.filter().put(id);
+        if (newest.insertions().incrementAndGet() >= newest.capacity()) {
+            grow(current);
+        }
+    }
+
+    public boolean hasSizing(long initialCapacity, double falsePositiveProbability) {
+        return this.initialCapacity == initialCapacity && this.falsePositiveProbability == falsePositiveProbability;
+    }
+
+    public int layerCount() {
+        return layers.size();
+    }
+
+    /**
+     * Writes the filter to the given file, replacing it atomically. {@code takenAtMillis} is stored with the layers
+     * and returned by {@link #readSnapshot} so ids recorded after the snapshot can be replayed on top of it.
+     */
+    public void writeSnapshot(Path file, long takenAtMillis) throws IOException {
+        var current = layers;
+        var tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (var channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            TransactionIdBloomFilter.writeFully(channel, ByteBuffer.allocate(SNAPSHOT_HEADER_BYTES)
+                    .putInt(SNAPSHOT_MAGIC).putLong(initialCapacity).putDouble(falsePositiveProbability)
+                    .putLong(takenAtMillis).putInt(current.size())
+                    .flip());
+            for (var layer : current) {
+                TransactionIdBloomFilter.writeFully(channel,
+                        ByteBuffer.allocate(Long.BYTES).putLong(layer.insertions().get()).flip());
+                layer.filter().writeTo(channel);
+            }
+            channel.force(false);
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Reads a snapshot written by {@link #writeSnapshot}.
+     */
+    public static Snapshot readSnapshot(Path file) throws IOException {
+        try (var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            var header = ByteBuffer.allocate(SNAPSHOT_HEADER_BYTES);
+            TransactionIdBloomFilter.readFully(channel, header);
+            header.flip();
+            if (header.getInt() != SNAPSHOT_MAGIC) {
+                throw new IOException("Not a transaction id Bloom filter snapshot: " + file);
+            }
+            var filter = new ScalableTransactionIdBloomFilter(header.getLong(), header.getDouble(), List.of());
+            var takenAtMillis = header.getLong();
+            var layerCount = header.getInt();
+            var layers = new ArrayList<Layer>(layerCount);
+            for (int i = 0; i < layerCount; i++) {
+                var insertions = ByteBuffer.allocate(Long.BYTES);
+                TransactionIdBloomFilter.readFully(channel, insertions);
+                layers.add(new Layer(TransactionIdBloomFilter.readFrom(channel), filter.capacityOf(i),
+                        new AtomicLong(insertions.flip().getLong())));
+            }
+            if (layers.isEmpty()) {
+                throw new IOException("Bloom filter snapshot without layers: " + file);
+            }
+            filter.layers = List.copyOf(layers);
+            return new Snapshot(filter, takenAtMillis);
+        }
+    }
+
+    private synchronized void grow(List<Layer> full) {
+        if (layers != full) {
+            return;
+        }
+        var grown = new ArrayList<>(full);
+        grown.add(newLayer(full.size()));
+        layers = List.copyOf(grown);
+    }
+
+    private Layer newLayer(int index) {
+        var capacity = capacityOf(index);
+        var probability = falsePositiveProbability * (1 - TIGHTENING_RATIO) * Math.pow(TIGHTENING_RATIO, index);
+        return new Layer(TransactionIdBloomFilter.create(capacity, probability), capacity, new AtomicLong());
+    }
+
+    private long capacityOf(int index) {
+        return initialCapacity << index;
+    }
+
+    private record Layer(TransactionIdBloomFilter filter, long capacity, AtomicLong insertions) {
+    }
+
+    public record Snapshot(ScalableTransactionIdBloomFilter filter, long takenAtMillis) {
+    }
+}
@@ -0,0 +1,210 @@
+package com.example.cashflow_monitoring.ingestion;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+
+/**
+ * Routes apply work to one of N shards by company id. Each shard runs its queued tasks one at a time, so all work for
+ * a company is applied in submission order and never concurrently. A shard queues at most its capacity of tasks;
+ * submissions to a full shard wait behind the earlier ones and are queued in the order they arrived once tasks
+ * complete. The shards and their threads are only started by the first submission, so they cost nothing unless the
+ * SHARDED apply mode is used.
+ */
+@Component
+public class ShardedApplyEngine {
+
+    private static final Logger log = LoggerFactory.getLogger(ShardedApplyEngine.class);
+    private final int shardCount;
+    private final int queueCapacity;
+    private final MeterRegistry meterRegistry;
+    private volatile List<Shard> shards;
+
+    public ShardedApplyEngine(@Value("${cashflow.ingestion.shards:0}") int shardCount,
+                              @Value("${cashflow.ingestion.shard-queue-capacity:4096}") int queueCapacity,
+                              MeterRegistry meterRegistry) {
+        this.shardCount = shardCount > 0 ? shardCount : Runtime.getRuntime().availableProcessors();
+        this.queueCapacity = queueCapacity;
+        this.meterRegistry = meterRegistry;
+        Gauge.builder("cashflow.ingestion.shards", this, engine -> engine.shards == null ? 0 : engine.shards.size())
+                .description("Number of started single-writer apply shards")
+                .register(meterRegistry);
+    }
+
+    public Mono<Void> submit(Integer companyId, Supplier<Mono<Void>> work) {
+        return Mono.defer(() -> {
+            var started = shards();
+            return started.get(Math.floorMod(companyId.hashCode(), started.size())).enqueue(new ApplyTask(work));
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        var started = shards;
+        if (started != null) {
+            started.forEach(Shard::dispose);
+        }
+    }
+
+    private List<Shard> shards() {
+        var started = shards;
+        if (started == null) {
+            synchronized (this) {
+                started = shards;
+                if (started == null) {
+                    started = IntStream.range(0, shardCount)
+                            .mapToObj(index -> new Shard(index, queueCapacity))
+                            .toList();
+                    started.forEach(shard -> shard.registerMetrics(meterRegistry));
+                    shards = started;
+                    log.info("Started {} apply shards with queue capacity {}", shardCount, queueCapacity);
+                }
+            }
+        }
+        return started;
+    }
+
+    /**
+     * A single-writer lane. The queued and waiting tasks are only touched under the shard's monitor, which is held
+     * for the handoff alone; the tasks themselves run on the shard's thread outside of it.
+     */
+    private static final class Shard {
+        private final int index;
+        private final int capacity;
+        private final Deque<ApplyTask> queue = new ArrayDeque<>();
+        private final Deque<ApplyTask> waiting = new ArrayDeque<>();
+        private final Scheduler scheduler;
+        private final AtomicLong appliedCount = new AtomicLong();
+        private boolean running;
+        private boolean disposed;
+
+        private Shard(int index, int capacity) {
+            this.index = index;
+            this.capacity = Math.max(capacity, 1);
+            this.scheduler = Schedulers.newSingle("apply-shard-" + index);
+        }
+
+        /**
+         * Queues the task, or parks it behind the already waiting ones while the shard is full. A waiting task that
+         * is cancelled leaves the line without ever running.
+         */
+        private Mono<Void> enqueue(ApplyTask task) {
+            synchronized (this) {
+                if (disposed) {
+                    return Mono.error(new IllegalStateException("Apply shard " + index + " is shut down"));
+                }
+                if (waiting.isEmpty() && queue.size() < capacity) {
+                    queue.offer(task);
+                } else {
+                    waiting.offer(task);
+                }
+            }
+            drain();
+            return task.completion().doOnCancel(() -> withdraw(task));
+        }
+
+        private synchronized void withdraw(ApplyTask task) {
+            waiting.remove(task);
+        }
+
+        private void drain() {
+            ApplyTask next;
+            synchronized (this) {
+                if (running || disposed || queue.isEmpty()) {
+                    return;
+                }
+                running = true;
+                next = queue.poll();
+                while (queue.size() < capacity && !waiting.isEmpty()) {
+                    queue.offer(waiting.poll());
+                }
+            }
+            next.execute()
+                    .subscribeOn(scheduler)
+                    .doFinally(signal -> {
+                        appliedCount.incrementAndGet();
+                        synchronized (this) {
+                            running = false;
+                        }
+                        drain();
+                    })
+                    .subscribe(null, next::reject);
+        }
+
+        private synchronized int queueDepth() {
+            return queue.size();
+        }
+
+        private synchronized int waitingCount() {
+            return waiting.size();
+        }
+
+        private void registerMetrics(MeterRegistry meterRegistry) {
+            var shardTag = String.valueOf(index);
+            Gauge.builder("cashflow.ingestion.shard.queue.depth", this, Shard::queueDepth)
+                    .description("Apply tasks queued on the shard")
+                    .tag("shard", shardTag)
+                    .register(meterRegistry);
+            Gauge.builder("cashflow.ingestion.shard.waiting", this, Shard::waitingCount)
+                    .description("Apply tasks waiting for room on the full shard")
+                    .tag("shard", shardTag)
+                    .register(meterRegistry);
+            FunctionCounter.builder("cashflow.ingestion.shard.applied", appliedCount, AtomicLong::doubleValue)
+                    .description("Apply tasks completed by the shard")
+                    .tag("shard", shardTag)
+                    .register(meterRegistry);
+        }
+
+        private void dispose() {
+            List<ApplyTask> pending;
+            synchronized (this) {
+                disposed = true;
+                pending = new ArrayList<>(queue);
+                pending.addAll(waiting);
+                queue.clear();
+                waiting.clear();
+            }
+            pending.forEach(task -> task.reject(new IllegalStateException("Apply shard " + index + " is shut down")));
+            scheduler.dispose();
+        }
+    }
+
+    private record ApplyTask(Supplier<Mono<Void>> work, Sinks.Empty<Void> done) {
+
+        private ApplyTask(Supplier<Mono<Void>> work) {
+            this(work, Sinks.empty());
+        }
+
+        private Mono<Void> execute() {
+            return Mono.defer(work)
+                    .doOnSuccess(ignored -> done.tryEmitEmpty())
+                    .doOnError(done::tryEmitError)
+                    .onErrorResume(error -> Mono.empty());
+        }
+
+        private Mono<Void> completion() {
+            return done.asMono();
+        }
+
+        private void reject(Throwable error) {
+            done.tryEmitError(error);
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package com.example.cashflow_monitoring.ingestion;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Thread-safe Bloom filter over transaction ids. The probe positions are derived by double hashing the two halves
+ * of the UUID, so membership checks neither allocate nor hash the textual form of the id. Fixed in size, see
+ * {@link ScalableTransactionIdBloomFilter} for the filter that grows with the ids added.
+ */
+public final class TransactionIdBloomFilter {
+
+    private static final int HEADER_BYTES = Long.BYTES + Integer.BYTES;
+    private static final int CHUNK_LONGS = 64 * 1024;
+
+    private final AtomicLongArray bits;
+    private final long bitCount;
+    private final int hashCount;
+
+    private TransactionIdBloomFilter(long bitCount, int hashCount) {
+        this.bits = new AtomicLongArray(Math.toIntExact((bitCount + Long.SIZE - 1) / Long.SIZE));
+        this.bitCount = bitCount;
+        this.hashCount = hashCount;
+    }
+
+    /**
+     * Creates a filter sized for the expected number of ids at the given false positive probability.
+     */
+    public static TransactionIdBloomFilter create(long expectedInsertions, double falsePositiveProbability) {
+        if (expectedInsertions <= 0 || falsePositiveProbability <= 0 || falsePositiveProbability >= 1) {
+            throw new IllegalArgumentException("Invalid Bloom filter sizing: " + expectedInsertions + ", " + falsePositiveProbability);
+        }
+        var bitCount = optimalBitCount(expectedInsertions, falsePositiveProbability);
+        return new TransactionIdBloomFilter(bitCount, optimalHashCount(expectedInsertions, bitCount));
+    }
+
+    public static long optimalBitCount(long expectedInsertions, double falsePositiveProbability) {
+        return (long) Math.ceil(-expectedInsertions * Math.log(falsePositiveProbability) / (Math.log(2) * Math.log(2)));
+    }
+
+    public static int optimalHashCount(long expectedInsertions, long bitCount) {
+        return Math.max(1, (int) Math.round((double) bitCount / expectedInsertions * Math.log(2)));
+    }
+
+    public boolean mightContain(UUID id) {
+        var h1 = mix(id.getMostSignificantBits());
+        var h2 = mix(id.getLeastSignificantBits()) | 1;
+        for (int i = 0; i < hashCount; i++) {
+            var bit = Math.floorMod(h1 + i * h2, bitCount);
+            if ((bits.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public void put(UUID id) {
+        var h1 = mix(id.getMostSignificantBits());
+        var h2 = mix(id.getLeastSignificantBits()) | 1;
+        for (int i = 0; i < hashCount; i++) {
+            var bit = Math.floorMod(h1 + i * h2, bitCount);
+            var index = (int) (bit >>> 6);
+            var mask = 1L << bit;
+            long word;
+            while (((word = bits.get(index)) & mask) == 0) {
+                if (bits.compareAndSet(index, word, word | mask)) {
+                    break;
+                }
+            }
+        }
+    }
+
+    public long bitCount() {
+        return bitCount;
+    }
+
+    public int hashCount() {
+        return hashCount;
+    }
+
+    /**
+     * Writes the sizing and the bits of the filter at the channel's position.
+     */
+    void writeTo(FileChannel channel) throws IOException {
+        writeFully(channel, ByteBuffer.allocate(HEADER_BYTES).putLong(bitCount).putInt(hashCount).flip());
+        var buffer = ByteBuffer.allocate(CHUNK_LONGS * Long.BYTES);
+        for (int i = 0; i < bits.length(); i++) {
+            buffer.putLong(bits.get(i));
+            if (!buffer.hasRemaining()) {
+                writeFully(channel, buffer.flip());
+                buffer.clear();
+            }
+        }
+        writeFully(channel, buffer.flip());
+    }
+
+    /**
+     * Reads a filter written by {@link #writeTo} from the channel's position.
+     */
+    static TransactionIdBloomFilter readFrom(FileChannel channel) throws IOException {
+        var header = ByteBuffer.allocate(HEADER_BYTES);
+        readFully(channel, header);
+        header.flip();
+        var filter = new TransactionIdBloomFilter(header.getLong(), header.getInt());
+        var buffer = ByteBuffer.allocate(CHUNK_LONGS * Long.BYTES);
+        var index = 0;
+        while (index < filter.bits.length()) {
+            buffer.clear().limit(Math.min(CHUNK_LONGS, filter.bits.length() - index) * Long.BYTES);
+            readFully(channel, buffer);
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                filter.bits.set(index++, buffer.getLong());
+            }
+        }
+        return filter;
+    }
+
+    static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    static void readFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                throw new IOException("Truncated Bloom filter snapshot");
+            }
+        }
+    }
+
+    private static long mix(long value) {
+        value = (value ^ (value >>> 33)) * 0xff51afd7ed558ccdL;
+        value = (value ^ (value >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return value ^ (value >>> 33);
+    }
+}
@@ -1,10 +1,12 @@
 package com.example.cashflow_monitoring.transaction;
 
-import com.example.cashflow_monitoring.companyinfo.CompanyInfo;
+import com.example.cashflow_monitoring.company.IbanIndex;
 import com.example.cashflow_monitoring.companyinfo.CompanyInfoService;
+import com.example.cashflow_monitoring.companyinfo.CompanyTransaction;
 import com.example.cashflow_monitoring.countrydetail.CountryDetailService;
-import com.example.cashflow_monitoring.exchangerate.ExchangeRate;
+import com.example.cashflow_monitoring.exception.BadRequestException;
 import com.example.cashflow_monitoring.exchangerate.ExchangeRateService;
+import com.example.cashflow_monitoring.util.CursorPaginator;
 import com.example.cashflow_monitoring.util.UrlBuilderUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -13,10 +15,9 @@ import reactor.core.publisher.Mono;
 
 import java.time.OffsetDateTime;
 import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
 import java.util.*;
 
-import static com.example.cashflow_monitoring.util.Constants.DEFAULT_LIMIT_FOR_REQUESTS;
-
 public abstract class AbstractTransactionService<T extends TransactionDTO, P extends TransactionParams, R extends Transaction>
         implements TransactionService<P, R> {
     private static final Logger log = LoggerFactory.getLogger(AbstractTransactionService.class);
@@ -45,71 +46,65 @@ public abstract class AbstractTransactionService<T extends TransactionDTO, P ext
 
     protected abstract String buildTransactionUrl(P params);
 
-    protected abstract Mono<List<T>> getTransactions(String url);
+    protected abstract Flux<T> getTransactions(String url);
 
     protected abstract P createUpdatedParams(P params, Integer limit, String afterUuid, String afterTimestamp);
 
-    protected abstract Mono<CompanyInfo> updateBalance(CompanyInfo companyInfo, R transaction,
-                                                       Mono<List<ExchangeRate>> exchangeRates, boolean isRecipient);
-
     @Override
     public Mono<List<R>> getTransactions(P params) {
-        validateParams(params);
-        var url = buildTransactionUrl(params);
-        return fetchTransactions(url);
-    }
-
-    private Mono<List<R>> fetchTransactions(String url) {
-        return getTransactions(url)
-                .flatMapMany(Flux::fromIterable)
-                .map(transactionMapper::toEntity)
-                .collectList();
+        return streamTransactions(params).collectList();
     }
 
     @Override
-    public Mono<List<R>> getPaginatedTransactions(P params) {
-        List<R> accumulatedTransactions = new ArrayList<>();
-        return getPaginatedTransactions(params, accumulatedTransactions)
-                .thenReturn(accumulatedTransactions);
+    public Flux<R> streamTransactions(P params) {
+        return Flux.defer(() -> {
+            validateParams(params);
+            var url = buildTransactionUrl(params);
+            return fetchTransactions(url);
+        });
     }
 
-    private Mono<Void> getPaginatedTransactions(P params, List<R> accumulatedTransactions) {
-        return getTransactions(params)
-                .flatMap(transactions -> queryTransactions(params, accumulatedTransactions, transactions))
-                .onErrorResume(error -> Mono.empty());
+    private Flux<R> fetchTransactions(String url) {
+        return getTransactions(url)
+                .map(transactionMapper::toEntity);
     }
 
-    private Mono<Void> queryTransactions(P params, List<R> accumulatedTransactions, List<R> transactions) {
-        return Mono.just(transactions)
-                .flatMap(trans -> filteredTransactions(trans, params.beforeTimestamp())
-                        .filter(filteredTransactions -> !filteredTransactions.isEmpty())
-                        .flatMap(filteredTransactions -> {
-                            accumulatedTransactions.addAll(filteredTransactions);
-                            log.info("accumulatedTransactions size: {}", accumulatedTransactions.size());
-                            return handlePagination(params, accumulatedTransactions, filteredTransactions);
-                        }));
+    @Override
+    public Flux<R> getPaginatedTransactions(P params) {
+        return getPaginatedTransactions(params, Integer.MAX_VALUE);
     }
 
-    private Mono<Void> handlePagination(P params, List<R> accumulatedTransactions, List<R> filteredTransactions) {
-        var lastTransaction = filteredTransactions.getLast();
-        var newLimit = Math.max(0, params.limit() - DEFAULT_LIMIT_FOR_REQUESTS);
-        var newAfterUuid = lastTransaction.id();
-        var newAfterTimestamp = lastTransaction.timestamp();
-
-        if (filteredTransactions.size() >= DEFAULT_LIMIT_FOR_REQUESTS) {
-            var updatedParams = updateParamsWithPagination(params, newLimit, String.valueOf(newAfterUuid),
-                    String.valueOf(newAfterTimestamp));
-            return getPaginatedTransactions(updatedParams, accumulatedTransactions);
+    @Override
+    public Flux<R> getPaginatedTransactions(P params, int firstPageSize) {
+        var pageSize = params.limit() != null
+                ? Math.min(params.limit(), transactionClient.pageSize()) : transactionClient.pageSize();
+        if (pageSize <= 0 || firstPageSize <= 0) {
+            return Flux.empty();
         }
-        return Mono.empty();
+        var transactions = Flux.defer(() -> {
+            validateParams(params);
+            var beforeTimestamp = parseBeforeTimestamp(params.beforeTimestamp());
+            return CursorPaginator.paginate(
+                    createUpdatedParams(params, Math.min(firstPageSize, pageSize), params.afterUuid(), params.afterTimestamp()),
+                    pageParams -> streamTransactions(pageParams)
+                            .takeWhile(transaction -> beforeTimestamp == null || transaction.timestamp().isBefore(beforeTimestamp)),
+                    (pageParams, lastTransaction) -> updateParamsWithPagination(pageParams, pageSize,
+                            String.valueOf(lastTransaction.id()), String.valueOf(lastTransaction.timestamp())),
+                    TransactionParams::limit);
+        });
+        return (params.limit() != null ? transactions.take(Math.max(params.limit(), 0)) : transactions)
+                .doOnError(error -> log.error("Stopped paginating transactions for {}: {}", params, error.getMessage()));
     }
 
-    private Mono<List<R>> filteredTransactions(List<R> transactions, String beforeTimestamp) {
-        return Mono.just(transactions.stream()
-                .filter(transaction -> beforeTimestamp == null ||
-                        transaction.timestamp()
-                                .isBefore(OffsetDateTime.parse(beforeTimestamp, DateTimeFormatter.ISO_OFFSET_DATE_TIME)))
-                .toList());
+    private static OffsetDateTime parseBeforeTimestamp(String beforeTimestamp) {
+        if (beforeTimestamp == null) {
+            return null;
+        }
+        try {
+            return OffsetDateTime.parse(beforeTimestamp, DateTimeFormatter.ISO_OFFSET_DATE_TIME);
+        } catch (DateTimeParseException e) {
+            throw new BadRequestException("Invalid beforeTimestamp: " + beforeTimestamp);
+        }
     }
 
     private P updateParamsWithPagination(P params, Integer limit, String afterUuid, String afterTimestamp) {
@@ -117,38 +112,27 @@ public abstract class AbstractTransactionService<T extends TransactionDTO, P ext
     }
 
     @Override
-    public Mono<Void> processTransaction(R transaction, Mono<List<ExchangeRate>> exchangeRates,
-                                         Mono<Map<String, Integer>> ibanToCompanyIdMap) {
-        return ibanToCompanyIdMap
-                .flatMap(ibanCompanyIdMap -> updateCompanyInfoWithTransaction(ibanCompanyIdMap, transaction, exchangeRates));
-    }
-
-    private Mono<Void> updateCompanyInfoWithTransaction(Map<String, Integer> ibanCompanyIdMap, R transaction,
-                                                        Mono<List<ExchangeRate>> exchangeRates) {
-        var optionalIssuerCompanyId = Optional.ofNullable(ibanCompanyIdMap.get(transaction.issuer()));
-        var optionalRecipientCompanyId = Optional.ofNullable(ibanCompanyIdMap.get(transaction.recipient()));
+    public Mono<Void> processTransaction(R transaction, IbanIndex ibanIndex) {
+        var optionalIssuerCompanyId = Optional.ofNullable(ibanIndex.getCompanyId(transaction.issuer()));
+        var optionalRecipientCompanyId = Optional.ofNullable(ibanIndex.getCompanyId(transaction.recipient()));
 
         var issuerCompanyInfo = optionalIssuerCompanyId
-                .map(issuerCompanyId -> updateCompanyInfo(transaction, issuerCompanyId, exchangeRates, false))
+                .map(issuerCompanyId -> applyTransaction(transaction, issuerCompanyId, false))
                 .orElse(Mono.empty());
 
         var recipientCompanyInfo = optionalRecipientCompanyId
-                .map(recipientCompanyId -> updateCompanyInfo(transaction, recipientCompanyId, exchangeRates, true))
+                .map(recipientCompanyId -> applyTransaction(transaction, recipientCompanyId, true))
                 .orElse(Mono.empty());
 
         return Mono.when(issuerCompanyInfo, recipientCompanyInfo).then();
     }
 
-    private synchronized Mono<CompanyInfo> updateCompanyInfo(R transaction, Integer companyId,
-                                                             Mono<List<ExchangeRate>> exchangeRates, boolean isRecipient) {
-        return companyInfoService.getCachedCompanyInfoByCompanyId(companyId)
-                .flatMap(companyInfo -> {
-                    if ((companyInfo.getLastSepaTransactionId() != null && companyInfo.getLastSepaTransactionId().equals(transaction.id())) ||
-                            (companyInfo.getLastSwiftTransactionId() != null && companyInfo.getLastSwiftTransactionId().equals(transaction.id()))) {
-                        return Mono.just(companyInfo);
-                    }
-                    return updateBalance(companyInfo, transaction, exchangeRates, isRecipient);
-                });
+    @Override
+    public Mono<Void> applyTransaction(R transaction, Integer companyId, boolean isRecipient) {
+        return getAmountInEur(transaction)
+                .flatMap(amountInEur -> companyInfoService.applyTransaction(companyId, new CompanyTransaction(
+                        transaction.id(), rail(), isRecipient, transaction.timestamp(),
+                        isRecipient ? amountInEur : amountInEur.negate(), transaction.currency())));
     }
 
 }
@@ -0,0 +1,7 @@
+package com.example.cashflow_monitoring.transaction;
+
+public enum ApplyMode {
+    PER_TRANSACTION,
+    BATCH,
+    SHARDED
+}
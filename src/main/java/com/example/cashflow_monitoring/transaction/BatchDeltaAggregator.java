@@ -0,0 +1,78 @@
+package com.example.cashflow_monitoring.transaction;
+
+import com.example.cashflow_monitoring.company.IbanIndex;
+import com.example.cashflow_monitoring.companyinfo.CompanyInfoDelta;
+import com.example.cashflow_monitoring.companyinfo.CompanyInfoService;
+import com.example.cashflow_monitoring.companyinfo.CompanyTransaction;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Folds a whole ingestion batch into one {@link CompanyInfoDelta} per company, so the batch costs one bulk write no
+ * matter how many transactions it contains. Each company's delta keeps the individual transaction sides, so the write
+ * can skip the ones a replayed batch already applied.
+ */
+@Component
+public class BatchDeltaAggregator {
+
+    private static final Logger log = LoggerFactory.getLogger(BatchDeltaAggregator.class);
+    private final CompanyInfoService companyInfoService;
+
+    public BatchDeltaAggregator(CompanyInfoService companyInfoService) {
+        this.companyInfoService = companyInfoService;
+    }
+
+    public Mono<Void> applyBatch(List<RailBatch<?>> batches, IbanIndex ibanIndex) {
+        return Flux.fromIterable(batches)
+                .concatMap(batch -> toCompanyTransactions(batch, ibanIndex))
+                .reduceWith(HashMap<Integer, CompanyInfoDelta>::new, this::accumulate)
+                .filter(deltas -> !deltas.isEmpty())
+                .doOnNext(deltas -> log.info("Folded batch into deltas for {} companies", deltas.size()))
+                .flatMap(deltas -> companyInfoService.applyDeltas(deltas.values()));
+    }
+
+    private <R extends Transaction> Flux<CompanySide> toCompanyTransactions(RailBatch<R> batch, IbanIndex ibanIndex) {
+        var transactionService = batch.transactionService();
+        return Flux.fromIterable(batch.transactions())
+                .concatMap(transaction -> {
+                    var issuerCompanyId = ibanIndex.getCompanyId(transaction.issuer());
+                    var recipientCompanyId = ibanIndex.getCompanyId(transaction.recipient());
+                    if (issuerCompanyId == null && recipientCompanyId == null) {
+                        return Flux.<CompanySide>empty();
+                    }
+                    return transactionService.getAmountInEur(transaction)
+                            .flatMapIterable(amountInEur -> {
+                                var sides = new ArrayList<CompanySide>(2);
+                                if (issuerCompanyId != null) {
+                                    sides.add(new CompanySide(issuerCompanyId, new CompanyTransaction(transaction.id(),
+                                            transactionService.rail(), false, transaction.timestamp(),
+                                            amountInEur.negate(), transaction.currency())));
+                                }
+                                if (recipientCompanyId != null) {
+                                    sides.add(new CompanySide(recipientCompanyId, new CompanyTransaction(transaction.id(),
+                                            transactionService.rail(), true, transaction.timestamp(),
+                                            amountInEur, transaction.currency())));
+                                }
+                                return sides;
+                            });
+                });
+    }
+
+    private HashMap<Integer, CompanyInfoDelta> accumulate(HashMap<Integer, CompanyInfoDelta> deltas, CompanySide side) {
+        deltas.computeIfAbsent(side.companyId(), CompanyInfoDelta::new).addTransaction(side.transaction());
+        return deltas;
+    }
+
+    public record RailBatch<R extends Transaction>(TransactionService<?, R> transactionService, List<R> transactions) {
+    }
+
+    private record CompanySide(Integer companyId, CompanyTransaction transaction) {
+    }
+}
@@ -0,0 +1,6 @@
+package com.example.cashflow_monitoring.transaction;
+
+public enum Rail {
+    SEPA,
+    SWIFT
+}
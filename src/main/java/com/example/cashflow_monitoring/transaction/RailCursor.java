@@ -0,0 +1,26 @@
+package com.example.cashflow_monitoring.transaction;
+
+import org.springframework.lang.Nullable;
+
+import java.time.OffsetDateTime;
+import java.util.UUID;
+
+/**
+ * Position of a single rail's ingestion stream: the timestamp and id of the last transaction that was applied.
+ */
+public record RailCursor(String afterTimestamp, String afterUuid) {
+
+    public static final RailCursor INITIAL =
+            new RailCursor("2000-01-01T00:00:00.000000Z", "00000000-0000-0000-0000-000000000000");
+
+    public static RailCursor of(@Nullable OffsetDateTime timestamp, @Nullable UUID id) {
+        if (timestamp == null || id == null) {
+            return INITIAL;
+        }
+        return new RailCursor(String.valueOf(timestamp), String.valueOf(id));
+    }
+
+    public static RailCursor after(Transaction transaction) {
+        return of(transaction.timestamp(), transaction.id());
+    }
+}
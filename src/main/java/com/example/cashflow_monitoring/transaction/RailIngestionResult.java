@@ -0,0 +1,22 @@
+package com.example.cashflow_monitoring.transaction;
+
+import static com.example.cashflow_monitoring.util.Constants.DEFAULT_LIMIT_FOR_REQUESTS;
+
+/**
+ * Outcome of one ingestion run of a rail.
+ *
+ * @param cursor           cursor after the last applied batch
+ * @param transactionCount number of transactions applied during the run
+ * @param caughtUp         whether the last fetched batch was smaller than a full batch, i.e. the rail has no backlog
+ */
+public record RailIngestionResult(Rail rail, RailCursor cursor, int transactionCount, boolean caughtUp) {
+
+    public static RailIngestionResult startingAt(Rail rail, RailCursor cursor) {
+        return new RailIngestionResult(rail, cursor, 0, true);
+    }
+
+    public RailIngestionResult after(RailCursor nextCursor, int batchSize) {
+        return new RailIngestionResult(rail, nextCursor, transactionCount + batchSize,
+                batchSize < DEFAULT_LIMIT_FOR_REQUESTS);
+    }
+}
@@ -0,0 +1,32 @@
+package com.example.cashflow_monitoring.transaction;
+
+/**
+ * Outcome of one rail in a manual ingestion run. Rails run independently, so one rail failing does not hide the
+ * progress the other one made.
+ *
+ * @param result outcome of the rail's run, {@code null} unless it succeeded
+ * @param error  why the rail failed or was skipped, {@code null} if it succeeded
+ */
+public record RailRunOutcome(Rail rail, Status status, RailIngestionResult result, String error) {
+
+    public static RailRunOutcome succeeded(RailIngestionResult result) {
+        return new RailRunOutcome(result.rail(), Status.SUCCEEDED, result, null);
+    }
+
+    public static RailRunOutcome failed(Rail rail, Throwable error) {
+        return new RailRunOutcome(rail, Status.FAILED, null, error.getMessage());
+    }
+
+    public static RailRunOutcome skipped(Rail rail) {
+        return new RailRunOutcome(rail, Status.SKIPPED, null, "Another ingestion run of " + rail + " is in progress");
+    }
+
+    public enum Status {
+        SUCCEEDED,
+        FAILED,
+        /**
+         * The rail was not run because another run of it, manual or scheduled, was in progress.
+         */
+        SKIPPED
+    }
+}
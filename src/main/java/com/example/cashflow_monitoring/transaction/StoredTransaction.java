@@ -0,0 +1,136 @@
+package com.example.cashflow_monitoring.transaction;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
+import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.Field;
+import org.springframework.data.mongodb.core.mapping.FieldType;
+
+import java.math.BigDecimal;
+import java.time.OffsetDateTime;
+import java.util.Objects;
+import java.util.UUID;
+
+/**
+ * Local copy of an ingested transaction of either rail, keyed by the transaction id.
+ */
+@Document(collection = "transactions")
+@CompoundIndexes({
+        @CompoundIndex(name = "rail_issuer_timestamp_id", def = "{'rail': 1, 'issuer': 1, 'timestamp': 1, '_id': 1}"),
+        @CompoundIndex(name = "rail_recipient_timestamp_id", def = "{'rail': 1, 'recipient': 1, 'timestamp': 1, '_id': 1}")
+})
+public class StoredTransaction {
+    @Id
+    private String id;
+
+    private Rail rail;
+    private String issuer;
+    private String recipient;
+
+    @Field(targetType = FieldType.DECIMAL128)
+    private BigDecimal amount;
+
+    private String currency;
+    private OffsetDateTime timestamp;
+
+    public <R extends Transaction> R toTransaction(Factory<R> factory) {
+        return factory.create(UUID.fromString(id), issuer, recipient, amount, currency, timestamp);
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public Rail getRail() {
+        return rail;
+    }
+
+    public void setRail(Rail rail) {
+        this.rail = rail;
+    }
+
+    public String getIssuer() {
+        return issuer;
+    }
+
+    public void setIssuer(String issuer) {
+        this.issuer = issuer;
+    }
+
+    public String getRecipient() {
+        return recipient;
+    }
+
+    public void setRecipient(String recipient) {
+        this.recipient = recipient;
+    }
+
+    public BigDecimal getAmount() {
+        return amount;
+    }
+
+    public void setAmount(BigDecimal amount) {
+        this.amount = amount;
+    }
+
+    public String getCurrency() {
+        return currency;
+    }
+
+    public void setCurrency(String currency) {
+        this.currency = currency;
+    }
+
+    public OffsetDateTime getTimestamp() {
+        return timestamp;
+    }
+
+    public void setTimestamp(OffsetDateTime timestamp) {
+        this.timestamp = timestamp;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        StoredTransaction that = (StoredTransaction) o;
+        return Objects.equals(getId(), that.getId()) &&
+                getRail() == that.getRail() &&
+                Objects.equals(getIssuer(), that.getIssuer()) &&
+                Objects.equals(getRecipient(), that.getRecipient()) &&
+                Objects.equals(getAmount(), that.getAmount()) &&
+                Objects.equals(getCurrency(), that.getCurrency()) &&
+                Objects.equals(getTimestamp(), that.getTimestamp());
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(getId(), getRail(), getIssuer(), getRecipient(), getAmount(), getCurrency(), getTimestamp());
+    }
+
+    @Override
+    public String toString() {
+        return "StoredTransaction{" +
+                "id='" + id + '\'' +
+                ", rail=" + rail +
+                ", issuer='" + issuer + '\'' +
+                ", recipient='" + recipient + '\'' +
+                ", amount=" + amount +
+                ", currency='" + currency + '\'' +
+                ", timestamp=" + timestamp +
+                '}';
+    }
+
+    /**
+     * Creates the rail specific transaction, matching the canonical constructors of the transaction records.
+     */
+    @FunctionalInterface
+    public interface Factory<R extends Transaction> {
+        R create(UUID id, String issuer, String recipient, BigDecimal amount, String currency, OffsetDateTime timestamp);
+    }
+}
@@ -1,7 +1,16 @@
 package com.example.cashflow_monitoring.transaction;
 
+import com.example.cashflow_monitoring.config.ConcurrencyLimiters;
+import com.example.cashflow_monitoring.config.UpstreamConnectionPools;
+import com.example.cashflow_monitoring.config.UpstreamHttpProperties.Endpoint;
 import com.example.cashflow_monitoring.exception.BadRequestException;
 import com.example.cashflow_monitoring.exception.InternalServerErrorException;
+import com.example.cashflow_monitoring.util.AdaptiveConcurrencyLimiter;
+import com.example.cashflow_monitoring.util.AdaptivePageSize;
+import com.example.cashflow_monitoring.util.SingleFlight;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
@@ -9,47 +18,187 @@ import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.client.ExchangeStrategies;
 import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.Exceptions;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
 
-import java.util.Arrays;
-import java.util.Collections;
-import java.util.List;
+import java.time.Duration;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static com.example.cashflow_monitoring.util.Constants.BYTE_COUNT;
+import static com.example.cashflow_monitoring.util.Constants.DEFAULT_LIMIT_FOR_REQUESTS;
 
 @Service
 public class TransactionClient {
 
     private static final Logger log = LoggerFactory.getLogger(TransactionClient.class);
+    private static final double RETRY_JITTER = 0.5;
+    private static final long HEDGING_MIN_SAMPLES = 100;
 
     private final WebClient webClient;
+    private final SingleFlight<String, TransactionDTO> singleFlight;
+    private final AdaptiveConcurrencyLimiter concurrencyLimiter;
+    private final AdaptivePageSize pageSize;
+    private final Timer latency;
+    private final Counter hedges;
+    private final Duration firstRowTimeout;
+    private final Duration rowIdleTimeout;
+    private final int maxRetries;
+    private final Duration retryBackoff;
+    private final boolean hedgingEnabled;
+    private final Duration minHedgeDelay;
 
-    public TransactionClient(WebClient.Builder webClientBuilder, @Value("${external.db.api.base-url}") String externalApiBaseUrl) {
-        this.webClient = webClientBuilder
+    public TransactionClient(UpstreamConnectionPools upstreamConnectionPools, MeterRegistry meterRegistry,
+                             ConcurrencyLimiters concurrencyLimiters,
+                             @Value("${external.db.api.base-url}") String externalApiBaseUrl,
+                             @Value("${cashflow.transactions.min-page-size:100}") int minPageSize,
+                             @Value("${cashflow.transactions.target-page-latency:1s}") Duration targetPageLatency,
+                             @Value("${cashflow.transactions.first-row-timeout:10s}") Duration firstRowTimeout,
+                             @Value("${cashflow.transactions.row-idle-timeout:5s}") Duration rowIdleTimeout,
+                             @Value("${cashflow.transactions.max-retries:2}") int maxRetries,
+                             @Value("${cashflow.transactions.retry-backoff:200ms}") Duration retryBackoff,
+                             @Value("${cashflow.transactions.hedging.enabled:false}") boolean hedgingEnabled,
+                             @Value("${cashflow.transactions.hedging.min-delay:50ms}") Duration minHedgeDelay) {
+        this.webClient = upstreamConnectionPools.webClientBuilder(Endpoint.TRANSACTIONS)
                 .baseUrl(externalApiBaseUrl)
                 .exchangeStrategies(ExchangeStrategies.builder()
                         .codecs(configurer -> configurer.defaultCodecs().maxInMemorySize(BYTE_COUNT))
                         .build())
                 .build();
+        this.singleFlight = new SingleFlight<>("transactions", meterRegistry);
+        this.concurrencyLimiter = concurrencyLimiters.externalApi();
+        this.pageSize = new AdaptivePageSize("transactions", Math.min(minPageSize, DEFAULT_LIMIT_FOR_REQUESTS),
+                DEFAULT_LIMIT_FOR_REQUESTS, targetPageLatency, meterRegistry);
+        this.latency = Timer.builder("cashflow.upstream.transactions.latency")
+                .description("Latency of successful upstream transaction page calls")
+                .publishPercentiles(0.95)
+                .register(meterRegistry);
+        this.hedges = Counter.builder("cashflow.upstream.transactions.hedges")
+                .description("Duplicate upstream transaction page calls sent after the p95 latency")
+                .register(meterRegistry);
+        this.firstRowTimeout = firstRowTimeout;
+        this.rowIdleTimeout = rowIdleTimeout;
+        this.maxRetries = maxRetries;
+        this.retryBackoff = retryBackoff;
+        this.hedgingEnabled = hedgingEnabled;
+        this.minHedgeDelay = minHedgeDelay;
     }
 
-    public <T extends TransactionDTO> Mono<List<T>> getTransactions(String url, Class<T[]> responseType) {
-        return webClient.get()
-                .uri(url)
-                .retrieve()
-                .onStatus(HttpStatus.BAD_REQUEST::equals, response -> {
-                    log.error("Client error while fetching companies from {}", url);
-                    return response.bodyToMono(String.class)
-                            .flatMap(body -> Mono.error(new BadRequestException(body)));
-                })
-                .onStatus(HttpStatus.INTERNAL_SERVER_ERROR::equals, response -> {
-                    log.error("Server error while fetching companies from {}", url);
-                    return response.bodyToMono(String.class)
-                            .flatMap(body -> Mono.error(new InternalServerErrorException(body, null)));
+    /**
+     * Page size to request when paginating through transactions, adapted to the observed upstream latency per item.
+     * Never exceeds {@code DEFAULT_LIMIT_FOR_REQUESTS}.
+     */
+    public int pageSize() {
+        return pageSize.get();
+    }
+
+    /**
+     * Decodes the upstream JSON array element by element and emits every row as soon as it is decoded, so
+     * {@code BYTE_COUNT} bounds a single row, not a page. Concurrent requests for the same page share one upstream
+     * call. The first row has to arrive within the first row timeout and every further row within the idle timeout.
+     * An attempt that fails before emitting its first row is retried with jittered backoff, client errors are not;
+     * once rows have been emitted a failure is passed on, since a retry would emit them twice. Ingestion then fails
+     * the batch and its next poll fetches the page again from the rail's checkpoint. With hedging enabled, an attempt without a first row after the observed p95 latency
+     * gets a duplicate and the first one to answer wins, a failing duplicate does not fail the attempt.
+     */
+    public <T extends TransactionDTO> Flux<T> getTransactions(String url, Class<T> elementType) {
+        return singleFlight.executeMany(url, () -> fetchWithRetries(url, elementType))
+                .cast(elementType);
+    }
+
+    private Flux<TransactionDTO> fetchWithRetries(String url, Class<? extends TransactionDTO> elementType) {
+        return Flux.defer(() -> {
+                    var emitted = new AtomicBoolean();
+                    return Flux.defer(() -> hedged(attempt(url, elementType)))
+                            .doOnNext(row -> emitted.set(true))
+                            .retryWhen(Retry.backoff(maxRetries, retryBackoff)
+                                    .jitter(RETRY_JITTER)
+                                    .filter(error -> !emitted.get() && isRetryable(error))
+                                    .doBeforeRetry(signal -> log.warn("Retrying transactions from {} after: {}", url,
+                                            signal.failure().toString()))
+                                    .onRetryExhaustedThrow((spec, signal) -> signal.failure()));
                 })
-                .bodyToMono(responseType)
-                .map(response -> response != null ? Arrays.asList(response) : Collections.<T>emptyList())
-                .doOnSuccess(result -> log.info("Successfully fetched {} items from {}", result.size(), url))
-                .doOnError(e -> log.error("Error fetching items from {}: {}", url, e.getMessage()));
+                .onErrorMap(TimeoutException.class,
+                        e -> new InternalServerErrorException("Timed out fetching transactions from " + url, e));
+    }
+
+    private Flux<TransactionDTO> attempt(String url, Class<? extends TransactionDTO> elementType) {
+        return concurrencyLimiter.runMany(() -> fetchTransactions(url, elementType)
+                .timeout(Mono.delay(firstRowTimeout), row -> Mono.delay(rowIdleTimeout)));
+    }
+
+    /**
+     * Races the attempt against a delayed duplicate up to the first row. Both are terminated by an end marker, so an
+     * empty page also counts as an answer and the first attempt to emit anything wins.
+     */
+    private Flux<TransactionDTO> hedged(Flux<TransactionDTO> attempt) {
+        if (!hedgingEnabled || latency.count() < HEDGING_MIN_SAMPLES) {
+            return attempt;
+        }
+        var rowsThenEnd = Flux.concat(attempt.map(Optional::of), Mono.just(Optional.<TransactionDTO>empty()));
+        return Flux.firstWithValue(rowsThenEnd,
+                        rowsThenEnd.doOnSubscribe(subscription -> hedges.increment()).delaySubscription(hedgeDelay()))
+                .onErrorMap(NoSuchElementException.class, TransactionClient::firstFailure)
+                .takeWhile(Optional::isPresent)
+                .map(Optional::get);
+    }
+
+    /**
+     * {@code firstWithValue} only fails once every attempt failed and then wraps their errors, unwrap the primary
+     * attempt's error so retries and error mapping see the real cause.
+     */
+    private static Throwable firstFailure(NoSuchElementException error) {
+        var failures = Exceptions.unwrapMultiple(error.getCause());
+        return failures.isEmpty() || failures.get(0) == null ? error : failures.get(0);
+    }
+
+    private Duration hedgeDelay() {
+        var percentiles = latency.takeSnapshot().percentileValues();
+        var p95 = percentiles.length > 0 ? (long) percentiles[0].value(TimeUnit.NANOSECONDS) : 0;
+        return Duration.ofNanos(Math.max(minHedgeDelay.toNanos(), p95));
+    }
+
+    private static boolean isRetryable(Throwable error) {
+        if (error instanceof WebClientResponseException responseException) {
+            return !responseException.getStatusCode().is4xxClientError();
+        }
+        return !(error instanceof BadRequestException);
+    }
+
+    private Flux<TransactionDTO> fetchTransactions(String url, Class<? extends TransactionDTO> elementType) {
+        return Flux.defer(() -> {
+            var count = new AtomicInteger();
+            var start = System.nanoTime();
+            return webClient.get()
+                    .uri(url)
+                    .retrieve()
+                    .onStatus(HttpStatus.BAD_REQUEST::equals, response -> {
+                        log.error("Client error while fetching transactions from {}", url);
+                        return response.bodyToMono(String.class)
+                                .flatMap(body -> Mono.error(new BadRequestException(body)));
+                    })
+                    .onStatus(HttpStatus.INTERNAL_SERVER_ERROR::equals, response -> {
+                        log.error("Server error while fetching transactions from {}", url);
+                        return response.bodyToMono(String.class)
+                                .flatMap(body -> Mono.error(new InternalServerErrorException(body, null)));
+                    })
+                    .bodyToFlux(elementType)
+                    .cast(TransactionDTO.class)
+                    .doOnNext(item -> count.incrementAndGet())
+                    .doOnComplete(() -> {
+                        var elapsed = System.nanoTime() - start;
+                        latency.record(elapsed, TimeUnit.NANOSECONDS);
+                        pageSize.record(count.get(), elapsed);
+                        log.info("Successfully fetched {} items from {}", count.get(), url);
+                    })
+                    .doOnError(e -> log.error("Error fetching items from {}: {}", url, e.getMessage()));
+        });
     }
 }
@@ -0,0 +1,129 @@
+package com.example.cashflow_monitoring.transaction;
+
+import com.example.cashflow_monitoring.exception.BadRequestException;
+import com.example.cashflow_monitoring.transaction.TransactionStore.Side;
+import org.springframework.lang.Nullable;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Resume point of a company transaction query. It holds the position of the last returned transaction of every
+ * IBAN, rail and direction stream, so the next page continues each stream exactly where it stopped. Streams that have
+ * not returned anything yet start after {@code after}. Encoded as versioned binary in base64url, clients treat it
+ * as opaque.
+ */
+public record TransactionContinuationToken(int companyId, @Nullable TransactionPosition after,
+                                           Map<StreamKey, TransactionPosition> positions) {
+
+    private static final byte VERSION = 1;
+    private static final Rail[] RAILS = Rail.values();
+    private static final Side[] SIDES = Side.values();
+
+    public TransactionContinuationToken {
+        positions = Map.copyOf(positions);
+    }
+
+    public static TransactionContinuationToken start(int companyId, @Nullable OffsetDateTime after) {
+        return new TransactionContinuationToken(companyId, after != null ? TransactionPosition.after(after) : null, Map.of());
+    }
+
+    @Nullable
+    public TransactionPosition positionOf(StreamKey key) {
+        return positions.getOrDefault(key, after);
+    }
+
+    /**
+     * Returns the token that continues after the given transactions, which must be in stream order.
+     */
+    public TransactionContinuationToken advance(List<StreamedTransaction> transactions) {
+        var advanced = new HashMap<>(positions);
+        transactions.forEach(streamed -> advanced.put(streamed.key(), TransactionPosition.of(streamed.transaction())));
+        return new TransactionContinuationToken(companyId, after, advanced);
+    }
+
+    public String encode() {
+        var bytes = new ByteArrayOutputStream(32 + positions.size() * 48);
+        try (var out = new DataOutputStream(bytes)) {
+            out.writeByte(VERSION);
+            out.writeInt(companyId);
+            out.writeBoolean(after != null);
+            if (after != null) {
+                writeTimestamp(out, after.timestamp());
+            }
+            out.writeInt(positions.size());
+            for (var entry : positions.entrySet()) {
+                out.writeUTF(entry.getKey().iban());
+                out.writeByte(entry.getKey().rail().ordinal());
+                out.writeByte(entry.getKey().side().ordinal());
+                writeTimestamp(out, entry.getValue().timestamp());
+                var id = UUID.fromString(entry.getValue().id());
+                out.writeLong(id.getMostSignificantBits());
+                out.writeLong(id.getLeastSignificantBits());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes.toByteArray());
+    }
+
+    /**
+     * Decodes a token issued for the given company.
+     *
+     * @throws BadRequestException if the token is malformed or was issued for another company
+     */
+    public static TransactionContinuationToken decode(String token, int companyId) {
+        try (var in = new DataInputStream(new ByteArrayInputStream(Base64.getUrlDecoder().decode(token)))) {
+            if (in.readByte() != VERSION) {
+                throw new BadRequestException("Unsupported continuation token");
+            }
+            if (in.readInt() != companyId) {
+                throw new BadRequestException("Continuation token was issued for another company");
+            }
+            var after = in.readBoolean() ? TransactionPosition.after(readTimestamp(in)) : null;
+            var count = in.readInt();
+            var positions = new HashMap<StreamKey, TransactionPosition>();
+            for (var i = 0; i < count; i++) {
+                var key = new StreamKey(in.readUTF(), RAILS[in.readUnsignedByte()], SIDES[in.readUnsignedByte()]);
+                var timestamp = readTimestamp(in);
+                positions.put(key, TransactionPosition.of(timestamp, new UUID(in.readLong(), in.readLong())));
+            }
+            return new TransactionContinuationToken(companyId, after, positions);
+        } catch (IOException | IllegalArgumentException | IndexOutOfBoundsException e) {
+            throw new BadRequestException("Invalid continuation token");
+        }
+    }
+
+    private static void writeTimestamp(DataOutputStream out, OffsetDateTime timestamp) throws IOException {
+        out.writeLong(ChronoUnit.MICROS.between(Instant.EPOCH, timestamp.toInstant()));
+    }
+
+    private static OffsetDateTime readTimestamp(DataInputStream in) throws IOException {
+        return OffsetDateTime.ofInstant(Instant.EPOCH.plus(in.readLong(), ChronoUnit.MICROS), ZoneOffset.UTC);
+    }
+
+    /**
+     * One of the ordered streams a company query merges: the transactions of one IBAN on one rail and side.
+     */
+    public record StreamKey(String iban, Rail rail, Side side) {
+    }
+
+    /**
+     * A transaction together with the stream it was read from.
+     */
+    public record StreamedTransaction(StreamKey key, Transaction transaction) {
+    }
+}
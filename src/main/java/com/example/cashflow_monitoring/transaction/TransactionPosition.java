@@ -0,0 +1,42 @@
+package com.example.cashflow_monitoring.transaction;
+
+import org.springframework.lang.Nullable;
+
+import java.time.OffsetDateTime;
+import java.util.Comparator;
+import java.util.UUID;
+
+/**
+ * Position in a transaction stream ordered by timestamp and then id. A position without an id lies after every
+ * transaction with its timestamp.
+ */
+public record TransactionPosition(OffsetDateTime timestamp, @Nullable String id) implements Comparable<TransactionPosition> {
+
+    private static final Comparator<TransactionPosition> ORDER = Comparator
+            .comparing((TransactionPosition position) -> position.timestamp().toInstant())
+            .thenComparing(TransactionPosition::id, Comparator.nullsLast(Comparator.naturalOrder()));
+
+    /**
+     * Orders transactions the way the upstream and the transaction store page through them.
+     */
+    public static final Comparator<Transaction> TRANSACTION_ORDER = Comparator
+            .comparing((Transaction transaction) -> transaction.timestamp().toInstant())
+            .thenComparing(transaction -> String.valueOf(transaction.id()));
+
+    public static TransactionPosition of(Transaction transaction) {
+        return new TransactionPosition(transaction.timestamp(), String.valueOf(transaction.id()));
+    }
+
+    public static TransactionPosition of(OffsetDateTime timestamp, UUID id) {
+        return new TransactionPosition(timestamp, String.valueOf(id));
+    }
+
+    public static TransactionPosition after(OffsetDateTime timestamp) {
+        return new TransactionPosition(timestamp, null);
+    }
+
+    @Override
+    public int compareTo(TransactionPosition other) {
+        return ORDER.compare(this, other);
+    }
+}
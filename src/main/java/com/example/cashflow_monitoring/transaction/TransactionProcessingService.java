@@ -1,30 +1,46 @@
 package com.example.cashflow_monitoring.transaction;
 
 import com.example.cashflow_monitoring.company.CompanyService;
-import com.example.cashflow_monitoring.companyinfo.CompanyInfo;
-import com.example.cashflow_monitoring.companyinfo.CompanyInfoService;
-import com.example.cashflow_monitoring.companyinfo.IbanToCompanyIdMapCache;
+import com.example.cashflow_monitoring.company.IbanIndex;
+import com.example.cashflow_monitoring.company.IbanIndexService;
+import com.example.cashflow_monitoring.companyinfo.CompanyInfoMigration;
+import com.example.cashflow_monitoring.config.ConcurrencyLimiters;
+import com.example.cashflow_monitoring.exception.BadRequestException;
 import com.example.cashflow_monitoring.exception.NotFoundException;
-import com.example.cashflow_monitoring.exchangerate.ExchangeRate;
-import com.example.cashflow_monitoring.exchangerate.ExchangeRateService;
+import com.example.cashflow_monitoring.ingestion.IngestionCheckpointService;
+import com.example.cashflow_monitoring.ingestion.IngestionProperties;
+import com.example.cashflow_monitoring.ingestion.IngestionProperties.RailSettings;
+import com.example.cashflow_monitoring.ingestion.ProcessedTransactionFilter;
+import com.example.cashflow_monitoring.ingestion.ShardedApplyEngine;
+import com.example.cashflow_monitoring.transaction.TransactionContinuationToken.StreamKey;
+import com.example.cashflow_monitoring.transaction.TransactionContinuationToken.StreamedTransaction;
+import com.example.cashflow_monitoring.transaction.TransactionStore.Side;
+import com.example.cashflow_monitoring.transaction.TransactionStore.StoredRange;
 import com.example.cashflow_monitoring.transaction.sepa.SepaTransaction;
 import com.example.cashflow_monitoring.transaction.sepa.SepaTransactionParams;
 import com.example.cashflow_monitoring.transaction.swift.SwiftTransaction;
 import com.example.cashflow_monitoring.transaction.swift.SwiftTransactionParams;
+import com.example.cashflow_monitoring.util.AdaptiveConcurrencyLimiter;
+import org.reactivestreams.Publisher;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.lang.Nullable;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
-import reactor.util.function.Tuple2;
-import reactor.util.function.Tuple4;
-import reactor.util.function.Tuples;
 
-import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.Map;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Function;
 
 import static com.example.cashflow_monitoring.util.Constants.DEFAULT_LIMIT_FOR_REQUESTS;
 
@@ -32,244 +48,388 @@ import static com.example.cashflow_monitoring.util.Constants.DEFAULT_LIMIT_FOR_R
 public class TransactionProcessingService {
 
     private static final Logger log = LoggerFactory.getLogger(TransactionProcessingService.class);
+    private static final int MIN_FIRST_PAGE_SIZE = 10;
+    private static final Comparator<StreamedTransaction> STREAM_ORDER =
+            Comparator.comparing(StreamedTransaction::transaction, TransactionPosition.TRANSACTION_ORDER);
     private final TransactionService<SepaTransactionParams, SepaTransaction> sepaTransactionService;
     private final TransactionService<SwiftTransactionParams, SwiftTransaction> swiftTransactionService;
     private final CompanyService companyService;
-    private final IbanToCompanyIdMapCache ibanToCompanyIdMapCache;
-    private final ExchangeRateService exchangeRateService;
-    private final CompanyInfoService companyInfoService;
+    private final IbanIndexService ibanIndexService;
+    private final CompanyInfoMigration companyInfoMigration;
+    private final IngestionCheckpointService ingestionCheckpointService;
+    private final BatchDeltaAggregator batchDeltaAggregator;
+    private final ShardedApplyEngine shardedApplyEngine;
+    private final IngestionProperties ingestionProperties;
+    private final ProcessedTransactionFilter processedTransactionFilter;
+    private final TransactionStore transactionStore;
+    private final AdaptiveConcurrencyLimiter mongoConcurrencyLimiter;
+    private final ApplyMode applyMode;
+    private final int prefetchDepth;
 
     public TransactionProcessingService(
             TransactionService<SepaTransactionParams, SepaTransaction> sepaTransactionService,
-            TransactionService<SwiftTransactionParams, SwiftTransaction> swiftTransactionService, CompanyService companyService, IbanToCompanyIdMapCache ibanToCompanyIdMapCache, ExchangeRateService exchangeRateService, CompanyInfoService companyInfoService) {
+            TransactionService<SwiftTransactionParams, SwiftTransaction> swiftTransactionService, CompanyService companyService, IbanIndexService ibanIndexService, IngestionCheckpointService ingestionCheckpointService,
+            CompanyInfoMigration companyInfoMigration,
+            BatchDeltaAggregator batchDeltaAggregator, ShardedApplyEngine shardedApplyEngine,
+            IngestionProperties ingestionProperties, ProcessedTransactionFilter processedTransactionFilter,
+            TransactionStore transactionStore, ConcurrencyLimiters concurrencyLimiters,
+            @Value("${cashflow.ingestion.apply-mode:PER_TRANSACTION}") ApplyMode applyMode,
+            @Value("${cashflow.ingestion.prefetch-depth:0}") int prefetchDepth) {
         this.sepaTransactionService = sepaTransactionService;
         this.swiftTransactionService = swiftTransactionService;
         this.companyService = companyService;
-        this.ibanToCompanyIdMapCache = ibanToCompanyIdMapCache;
-        this.exchangeRateService = exchangeRateService;
-        this.companyInfoService = companyInfoService;
+        this.ibanIndexService = ibanIndexService;
+        this.companyInfoMigration = companyInfoMigration;
+        this.ingestionCheckpointService = ingestionCheckpointService;
+        this.batchDeltaAggregator = batchDeltaAggregator;
+        this.shardedApplyEngine = shardedApplyEngine;
+        this.ingestionProperties = ingestionProperties;
+        this.processedTransactionFilter = processedTransactionFilter;
+        this.transactionStore = transactionStore;
+        this.mongoConcurrencyLimiter = concurrencyLimiters.mongo();
+        this.applyMode = applyMode;
+        this.prefetchDepth = prefetchDepth;
     }
 
+    /**
+     * Returns up to {@code limit} of the company's transactions in timestamp order, together with a continuation
+     * token when there may be more. A given token takes precedence over {@code afterTimestamp}.
+     */
     public Mono<TransactionResponseDTO> getTransactionsWithinTimeRange(Integer companyId, Integer limit,
-                                                                       String afterTimestamp, String beforeTimestamp) {
-        return companyService.getCompanyById(companyId)
-                .switchIfEmpty(Mono.error(new NotFoundException("Could not find companyInfo for this CompanyId")))
-                .flatMap(company -> getTransactionsFromIbans(company.ibans(), limit, afterTimestamp, beforeTimestamp, companyId));
+                                                                       String afterTimestamp, String beforeTimestamp,
+                                                                       @Nullable String continuationToken) {
+        return Mono.fromCallable(() -> toQuery(companyId, afterTimestamp, beforeTimestamp, continuationToken))
+                .flatMap(query -> companyService.getCompanyById(companyId)
+                        .switchIfEmpty(Mono.error(new NotFoundException("Could not find companyInfo for this CompanyId")))
+                        .flatMap(company -> getTransactionsFromIbans(company.ibans(), limit, query, companyId)));
     }
 
-    private Mono<TransactionResponseDTO> getTransactionsFromIbans(List<String> ibans, Integer limit, String afterTimestamp,
-                                                                  String beforeTimestamp, Integer companyId) {
+    /**
+     * Streams the company's transactions of both rails as they are read, without collecting them first.
+     */
+    public Flux<Transaction> streamTransactionsWithinTimeRange(Integer companyId, Integer limit,
+                                                               String afterTimestamp, String beforeTimestamp,
+                                                               @Nullable String continuationToken) {
+        return Mono.fromCallable(() -> toQuery(companyId, afterTimestamp, beforeTimestamp, continuationToken))
+                .flatMapMany(query -> companyService.getCompanyById(companyId)
+                        .switchIfEmpty(Mono.error(new NotFoundException("Could not find companyInfo for this CompanyId")))
+                        .flatMapMany(company -> streamTransactionsFromIbans(company.ibans(), limit, query)))
+                .map(StreamedTransaction::transaction);
+    }
+
+    /**
+     * Merges the timestamp ordered streams of every IBAN, rail and direction into one stream ordered by timestamp and
+     * id, and applies {@code limit} to the merged stream. The merge has to see the head of every stream before it
+     * emits anything, so each stream starts with a first page of its share of the limit, at least
+     * {@link #MIN_FIRST_PAGE_SIZE}, and only later pages grow to the adaptive page size. Once the limit is reached
+     * all underlying streams are cancelled, so no stream fetches more than the merge consumed from it plus its current
+     * page. Each stream starts at its own position in the query's continuation token.
+     */
+    private Flux<StreamedTransaction> streamTransactionsFromIbans(List<String> ibans, Integer limit, TransactionQuery query) {
+        return Mono.zip(getStoredRange(Rail.SEPA), getStoredRange(Rail.SWIFT))
+                .flatMapMany(storedRanges -> {
+                    var distinctIbans = new LinkedHashSet<>(ibans);
+                    var firstPageSize = firstPageSize(limit, distinctIbans.size() * Side.values().length * Rail.values().length);
+                    var streams = new ArrayList<Flux<StreamedTransaction>>();
+                    for (var iban : distinctIbans) {
+                        for (var side : Side.values()) {
+                            streams.add(streamTransactions(sepaTransactionService, SepaTransactionParams::new,
+                                    SepaTransaction::new, new StreamKey(iban, Rail.SEPA, side), query, limit,
+                                    firstPageSize, storedRanges.getT1()));
+                            streams.add(streamTransactions(swiftTransactionService, SwiftTransactionParams::new,
+                                    SwiftTransaction::new, new StreamKey(iban, Rail.SWIFT, side), query, limit,
+                                    firstPageSize, storedRanges.getT2()));
+                        }
+                    }
+                    var merged = mergeInOrder(streams, firstPageSize);
+                    return limit != null ? merged.take(Math.max(limit, 0)) : merged;
+                });
+    }
+
+    private static int firstPageSize(@Nullable Integer limit, int streamCount) {
+        if (limit == null || streamCount == 0) {
+            return DEFAULT_LIMIT_FOR_REQUESTS;
+        }
+        var share = (Math.max(limit, 0) + streamCount - 1) / streamCount;
+        return Math.max(1, Math.min(limit, Math.max(share, MIN_FIRST_PAGE_SIZE)));
+    }
+
+    private <P extends TransactionParams, R extends Transaction> Flux<StreamedTransaction>
+    streamTransactions(TransactionService<P, R> service, ParamsFactory<P> paramsFactory,
+                       StoredTransaction.Factory<R> transactionFactory, StreamKey key, TransactionQuery query,
+                       @Nullable Integer limit, int firstPageSize, Optional<StoredRange> storedRange) {
+        return queryTransactions(service, paramsFactory, transactionFactory, key.side(), key.iban(),
+                query.token().positionOf(key), query.before(), limit, firstPageSize, storedRange)
+                .map(transaction -> new StreamedTransaction(key, transaction));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Flux<StreamedTransaction> mergeInOrder(List<Flux<StreamedTransaction>> streams, int prefetch) {
+        Publisher<StreamedTransaction>[] sources = streams.toArray(Publisher[]::new);
+        return Flux.mergeComparing(prefetch, STREAM_ORDER, sources);
+    }
+
+    private Mono<TransactionResponseDTO> getTransactionsFromIbans(List<String> ibans, Integer limit,
+                                                                  TransactionQuery query, Integer companyId) {
         log.info("processing ibans: {} for companyId: {}", ibans, companyId);
-        return Flux.fromIterable(ibans)
-                .flatMap(iban -> getAllTransactionForIban(iban, afterTimestamp, beforeTimestamp, limit))
+        return streamTransactionsFromIbans(ibans, limit, query)
                 .collectList()
-                .flatMap(this::aggregateTransactionResponses);
+                .map(transactions -> toTransactionResponse(transactions, query,
+                        limit != null && transactions.size() >= limit));
+    }
+
+    private Mono<Optional<StoredRange>> getStoredRange(Rail rail) {
+        return transactionStore.getStoredRange(rail)
+                .map(Optional::of)
+                .defaultIfEmpty(Optional.empty());
+    }
+
+    private static TransactionQuery toQuery(Integer companyId, @Nullable String afterTimestamp,
+                                            @Nullable String beforeTimestamp, @Nullable String continuationToken) {
+        var token = continuationToken != null && !continuationToken.isBlank()
+                ? TransactionContinuationToken.decode(continuationToken, companyId)
+                : TransactionContinuationToken.start(companyId, parseTimestamp(afterTimestamp));
+        return new TransactionQuery(token, parseTimestamp(beforeTimestamp));
     }
 
-    private Mono<TransactionResponseDTO> aggregateTransactionResponses(List<Tuple4<List<SepaTransaction>, List<SepaTransaction>,
-            List<SwiftTransaction>, List<SwiftTransaction>>> tuples) {
-        List<SepaTransaction> allPayerTransactions = new ArrayList<>();
-        List<SepaTransaction> allReceiverTransactions = new ArrayList<>();
-        List<SwiftTransaction> allSenderTransactions = new ArrayList<>();
-        List<SwiftTransaction> allBeneficiaryTransactions = new ArrayList<>();
+    private static TransactionResponseDTO toTransactionResponse(List<StreamedTransaction> transactions,
+                                                                TransactionQuery query, boolean hasMore) {
+        var sepaTransactions = new ArrayList<SepaTransaction>();
+        var swiftTransactions = new ArrayList<SwiftTransaction>();
+        var mergedTransactions = new ArrayList<TransactionResponseDTO.RailTransaction>(transactions.size());
+        for (var streamed : transactions) {
+            mergedTransactions.add(new TransactionResponseDTO.RailTransaction(streamed.key().rail(), streamed.transaction()));
+            if (streamed.transaction() instanceof SepaTransaction sepaTransaction) {
+                sepaTransactions.add(sepaTransaction);
+            } else if (streamed.transaction() instanceof SwiftTransaction swiftTransaction) {
+                swiftTransactions.add(swiftTransaction);
+            }
+        }
+        var continuationToken = hasMore ? query.token().advance(transactions).encode() : null;
+        return new TransactionResponseDTO(sepaTransactions, swiftTransactions, mergedTransactions, continuationToken);
+    }
 
-        for (Tuple4<List<SepaTransaction>, List<SepaTransaction>, List<SwiftTransaction>, List<SwiftTransaction>> tuple : tuples) {
-            allPayerTransactions.addAll(tuple.getT1());
-            allReceiverTransactions.addAll(tuple.getT2());
-            allSenderTransactions.addAll(tuple.getT3());
-            allBeneficiaryTransactions.addAll(tuple.getT4());
+    /**
+     * Streams one IBAN's transactions of one rail and side in timestamp order. The part the rail has stored locally
+     * is read from the transaction store, only the parts before the store's start and past the ingestion checkpoint
+     * are fetched from the upstream. The upstream part past the checkpoint is only requested once the local part
+     * did not fill the limit.
+     */
+    private <P extends TransactionParams, R extends Transaction> Flux<R>
+    queryTransactions(TransactionService<P, R> service, ParamsFactory<P> paramsFactory,
+                      StoredTransaction.Factory<R> transactionFactory, Side side, String iban,
+                      @Nullable TransactionPosition after, @Nullable OffsetDateTime before, @Nullable Integer limit,
+                      int firstPageSize, Optional<StoredRange> storedRange) {
+        if (storedRange.isEmpty()) {
+            return fetchTransactions(service, paramsFactory, side, iban, after, before, limit, firstPageSize);
         }
-        allPayerTransactions.addAll(allReceiverTransactions);
-        allSenderTransactions.addAll(allBeneficiaryTransactions);
-        var transactionResponseDTO = new TransactionResponseDTO(
-                allPayerTransactions, allSenderTransactions
-        );
-        return Mono.just(transactionResponseDTO);
-    }
-
-    private Mono<Tuple4<List<SepaTransaction>, List<SepaTransaction>, List<SwiftTransaction>,
-            List<SwiftTransaction>>> getAllTransactionForIban(String iban, String afterTimestamp,
-                                                              String beforeTimestamp, Integer limit) {
-        return Mono.zip(
-                handleGetTransactionsPaginated(
-                        sepaTransactionService,
-                        getSepaTransactionParamsForPayer(iban, afterTimestamp, beforeTimestamp, limit)
-                ),
-                handleGetTransactionsPaginated(
-                        sepaTransactionService,
-                        getSepaTransactionParamsForReceiver(iban, afterTimestamp, beforeTimestamp, limit)
-                ),
-                handleGetTransactionsPaginated(
-                        swiftTransactionService,
-                        getSwiftTransactionParamsForSender(iban, afterTimestamp, beforeTimestamp, limit)
-                ),
-                handleGetTransactionsPaginated(
-                        swiftTransactionService,
-                        getSwiftTransactionParamsForBeneficiary(iban, afterTimestamp, beforeTimestamp, limit)
-                )
-        );
+        var range = storedRange.get();
+        var head = isBefore(after, range.from())
+                ? fetchTransactions(service, paramsFactory, side, iban, after,
+                        earliest(before, range.from().timestamp().plus(1, ChronoUnit.MICROS)), limit, firstPageSize)
+                .filter(transaction -> TransactionPosition.of(transaction).compareTo(range.from()) <= 0)
+                : Flux.<R>empty();
+        var localAfter = latest(after, range.from());
+        var local = localAfter.compareTo(range.to()) < 0 && isBefore(localAfter, before)
+                ? transactionStore.find(service.rail(), side, iban, localAfter, range.to(), before, limit, firstPageSize)
+                .map(storedTransaction -> storedTransaction.toTransaction(transactionFactory))
+                : Flux.<R>empty();
+        var tailAfter = latest(after, range.to());
+        var tail = isBefore(tailAfter, before)
+                ? fetchTransactions(service, paramsFactory, side, iban, tailAfter, before, limit, firstPageSize)
+                : Flux.<R>empty();
+        var transactions = Flux.concat(head, local, tail);
+        return limit != null ? transactions.take(Math.max(limit, 0)) : transactions;
     }
 
-    private <P extends TransactionParams, R extends Transaction> Mono<List<R>>
-    handleGetTransactionsPaginated(TransactionService<P, R> service, P params) {
-        return service.getPaginatedTransactions(params);
+    private <P extends TransactionParams, R extends Transaction> Flux<R>
+    fetchTransactions(TransactionService<P, R> service, ParamsFactory<P> paramsFactory, Side side, String iban,
+                      @Nullable TransactionPosition after, @Nullable OffsetDateTime before, @Nullable Integer limit,
+                      int firstPageSize) {
+        var params = paramsFactory.create(
+                limit == null ? DEFAULT_LIMIT_FOR_REQUESTS : limit,
+                after != null ? String.valueOf(after.timestamp()) : null,
+                after != null ? after.id() : null,
+                before != null ? String.valueOf(before) : null,
+                side == Side.ISSUER ? iban : null,
+                side == Side.RECIPIENT ? iban : null);
+        return service.getPaginatedTransactions(params, firstPageSize);
+    }
+
+    private static boolean isBefore(@Nullable TransactionPosition position, TransactionPosition other) {
+        return position == null || position.compareTo(other) < 0;
     }
 
-    private Mono<List<SepaTransaction>> getSepaTransactionsBatch(String sepaAfterTimestamp, String sepaAfterUuid) {
-        return handleGetTransactionsPaginated(
-                sepaTransactionService,
-                new SepaTransactionParams(DEFAULT_LIMIT_FOR_REQUESTS, sepaAfterTimestamp, sepaAfterUuid, null, null, null)
-        );
+    private static boolean isBefore(TransactionPosition position, @Nullable OffsetDateTime before) {
+        return before == null || position.timestamp().isBefore(before);
     }
 
-    private Mono<List<SwiftTransaction>> getSwiftTransactionsBatch(String swiftAfterTimestamp, String swiftAfterUuid) {
-        return handleGetTransactionsPaginated(
-                swiftTransactionService,
-                new SwiftTransactionParams(DEFAULT_LIMIT_FOR_REQUESTS, swiftAfterTimestamp, swiftAfterUuid, null, null, null)
-        );
+    private static TransactionPosition latest(@Nullable TransactionPosition position, TransactionPosition other) {
+        return isBefore(position, other) ? other : position;
     }
 
-    private Mono<Tuple2<List<SepaTransaction>, List<SwiftTransaction>>> getTransactionsBatch(
-            String sepaAfterTimestamp, String sepaAfterUuid, String swiftAfterTimestamp, String swiftAfterUuid) {
-        return Mono.zip(getSepaTransactionsBatch(sepaAfterTimestamp, sepaAfterUuid),
-                getSwiftTransactionsBatch(swiftAfterTimestamp, swiftAfterUuid));
+    private static OffsetDateTime earliest(@Nullable OffsetDateTime timestamp, OffsetDateTime other) {
+        return timestamp != null && timestamp.isBefore(other) ? timestamp : other;
+    }
+
+    @Nullable
+    private static OffsetDateTime parseTimestamp(@Nullable String timestamp) {
+        if (timestamp == null || timestamp.isBlank()) {
+            return null;
+        }
+        try {
+            return OffsetDateTime.parse(timestamp, DateTimeFormatter.ISO_OFFSET_DATE_TIME);
+        } catch (DateTimeParseException e) {
+            throw new BadRequestException("Invalid timestamp: " + timestamp);
+        }
+    }
+
+    private <P extends TransactionParams, R extends Transaction> Mono<List<R>>
+    handleGetTransactionsPaginated(TransactionService<P, R> service, P params) {
+        return service.getPaginatedTransactions(params).collectList();
     }
 
     private <P extends TransactionParams, R extends Transaction> Mono<Void>
     processTransactions(List<R> transactions,
-                        TransactionService<P, R> transactionService, Mono<List<ExchangeRate>> exchangeRates,
-                        Mono<Map<String, Integer>> ibanToCompanyIdMap) {
-
-        return Flux.fromIterable(transactions)
-                .flatMap(transaction -> transactionService.processTransaction(transaction, exchangeRates, ibanToCompanyIdMap))
-                .then();
-    }
-
-    private Mono<Tuple4<String, String, String, String>> processTransactionsBatch(
-            String sepaAfterTimestamp, String sepaAfterUuid, String swiftAfterTimestamp, String swiftAfterUuid) {
-        Mono<List<ExchangeRate>> exchangeRates = exchangeRateService.getExchangeRates().cache(Duration.ofHours(1));
-        log.info("Processing all transactions");
-        return getTransactionsBatch(sepaAfterTimestamp, sepaAfterUuid, swiftAfterTimestamp, swiftAfterUuid)
-                .flatMap(tuple -> {
-                    var sepaTransactions = tuple.getT1();
-                    var swiftTransactions = tuple.getT2();
-                    log.info("Processing {} sepaTransactions", sepaTransactions.size());
-                    log.info("Processing {} swiftTransactions", swiftTransactions.size());
-
-                    var ibanToCompanyIdMap = ibanToCompanyIdMapCache.getIbanToCompanyIdMap();
-
-                    var sepaProcessing = processTransactions(sepaTransactions, sepaTransactionService,
-                            exchangeRates, ibanToCompanyIdMap);
-                    var swiftProcessing = processTransactions(swiftTransactions, swiftTransactionService,
-                            exchangeRates, ibanToCompanyIdMap);
-
-                    return Mono.when(sepaProcessing, swiftProcessing)
-                            .then(Mono.defer(() -> {
-                                var newSepaAfterTimestamp = sepaTransactions.isEmpty() ? sepaAfterTimestamp
-                                        : String.valueOf(sepaTransactions.get(sepaTransactions.size() - 1).timestamp());
-                                var newSepaAfterUuid = sepaTransactions.isEmpty() ? sepaAfterUuid
-                                        : String.valueOf(sepaTransactions.get(sepaTransactions.size() - 1).id());
-                                var newSwiftAfterTimestamp = swiftTransactions.isEmpty() ? swiftAfterTimestamp
-                                        : String.valueOf(swiftTransactions.get(swiftTransactions.size() - 1).timestamp());
-                                var newSwiftAfterUuid = swiftTransactions.isEmpty() ? swiftAfterUuid
-                                        : String.valueOf(swiftTransactions.get(swiftTransactions.size() - 1).id());
-
-                                return Mono.just(Tuples.of(newSepaAfterTimestamp, newSepaAfterUuid,
-                                        newSwiftAfterTimestamp, newSwiftAfterUuid));
-                            }));
-                })
-                .doOnError(e -> log.error("Error processing transactions", e));
-    }
-
-    public Mono<Tuple4<String, String, String, String>> processNewTransactions(Integer limit) {
-        var finalLimit = limit == null || limit > 5 ? 5 : limit;
-        return Mono.zip(
-                        companyInfoService.findTopByOrderByLastSepaTransactionTimestampDesc(),
-                        companyInfoService.findTopByOrderByLastSwiftTransactionTimestampDesc()
-                )
-                .flatMap(tuple -> {
-                    CompanyInfo sepa = tuple.getT1();
-                    CompanyInfo swift = tuple.getT2();
-                    var sepaAfterTimestamp = sepa.getLastSepaTransactionTimestamp() != null ?
-                            String.valueOf(sepa.getLastSepaTransactionTimestamp()) : "2000-01-01T00:00:00.000000Z";
-                    var sepaAfterUuid = sepa.getLastSepaTransactionId() != null ?
-                            String.valueOf(sepa.getLastSepaTransactionId()) : "00000000-0000-0000-0000-000000000000";
-                    var swiftAfterTimestamp = swift.getLastSwiftTransactionId() != null ?
-                            String.valueOf(swift.getLastSwiftTransactionTimestamp()) : "2000-01-01T00:00:00.000000Z";
-                    var swiftAfterUuid = swift.getLastSwiftTransactionId() != null ?
-                            String.valueOf(swift.getLastSwiftTransactionId()) : "00000000-0000-0000-0000-000000000000";
-                    var attempt = new AtomicInteger();
-                    return processAllTransactions(sepaAfterTimestamp, sepaAfterUuid, swiftAfterTimestamp, swiftAfterUuid, finalLimit, attempt);
-                });
+                        TransactionService<P, R> transactionService,
+                        IbanIndex ibanIndex, int concurrency) {
+        if (applyMode == ApplyMode.BATCH) {
+            return batchDeltaAggregator.applyBatch(
+                            List.of(new BatchDeltaAggregator.RailBatch<>(transactionService, transactions)), ibanIndex)
+                    .then(Mono.defer(() -> processedTransactionFilter.markProcessed(transactionService.rail(), transactions)));
+        }
+        if (applyMode == ApplyMode.SHARDED) {
+            return applyAndMarkProcessed(transactions, transactionService.rail(), concurrency,
+                    transaction -> Mono.when(
+                            submitToShard(transaction, ibanIndex.getCompanyId(transaction.issuer()), transactionService, false),
+                            submitToShard(transaction, ibanIndex.getCompanyId(transaction.recipient()), transactionService, true)));
+        }
+        return applyAndMarkProcessed(transactions, transactionService.rail(), concurrency,
+                transaction -> mongoConcurrencyLimiter.run(
+                        () -> transactionService.processTransaction(transaction, ibanIndex)));
     }
 
-    private Mono<Tuple4<String, String, String, String>> processAllTransactions(
-            String sepaAfterTimestamp, String sepaAfterUuid,
-            String swiftAfterTimestamp, String swiftAfterUuid, Integer limit, AtomicInteger attempt) {
-        return processTransactionsBatch(sepaAfterTimestamp, sepaAfterUuid, swiftAfterTimestamp, swiftAfterUuid)
-                .flatMap(result -> {
-                    var newSepaAfterTimestamp = result.getT1();
-                    var newSepaAfterUuid = result.getT2();
-                    var newSwiftAfterTimestamp = result.getT3();
-                    var newSwiftAfterUuid = result.getT4();
-
-                    if (newSepaAfterTimestamp.equals(sepaAfterTimestamp) &&
-                            newSepaAfterUuid.equals(sepaAfterUuid) &&
-                            newSwiftAfterTimestamp.equals(swiftAfterTimestamp) &&
-                            newSwiftAfterUuid.equals(swiftAfterUuid)) {
-                        return Mono.just(result);
-                    }
+    /**
+     * Applies the transactions concurrently and then marks the ones that were applied as processed in one bulk write.
+     * If an apply fails, the transactions applied so far are still marked before the error is passed on.
+     */
+    private <R extends Transaction> Mono<Void>
+    applyAndMarkProcessed(List<R> transactions, Rail rail, int concurrency, Function<R, Mono<Void>> apply) {
+        return Mono.defer(() -> {
+            var applied = new ConcurrentLinkedQueue<R>();
+            return Flux.fromIterable(transactions)
+                    .flatMap(transaction -> apply.apply(transaction).doOnSuccess(ignored -> applied.add(transaction)),
+                            concurrency)
+                    .then()
+                    .onErrorResume(e -> processedTransactionFilter.markProcessed(rail, List.copyOf(applied))
+                            .then(Mono.<Void>error(e)))
+                    .then(Mono.defer(() -> processedTransactionFilter.markProcessed(rail, List.copyOf(applied))));
+        });
+    }
 
-                    if (attempt.incrementAndGet() < limit) {
-                        return processAllTransactions(newSepaAfterTimestamp, newSepaAfterUuid,
-                                newSwiftAfterTimestamp, newSwiftAfterUuid, limit, attempt);
-                    }
-                    return Mono.just(result);
+    private <P extends TransactionParams, R extends Transaction> Mono<Void>
+    submitToShard(R transaction, Integer companyId, TransactionService<P, R> transactionService, boolean isRecipient) {
+        if (companyId == null) {
+            return Mono.empty();
+        }
+        return shardedApplyEngine.submit(companyId, () -> mongoConcurrencyLimiter.run(
+                () -> transactionService.applyTransaction(transaction, companyId, isRecipient)));
+    }
+
+    /**
+     * Ingests up to {@code maxBatches} batches of the given rail, resuming from the rail's checkpoint. Waits for the
+     * company info migration first, the atomic updates cannot be applied to documents in the legacy format. Callers
+     * must not run the same rail concurrently, {@link com.example.cashflow_monitoring.ingestion.IngestionScheduler}
+     * serializes every run of a rail.
+     */
+    public Mono<RailIngestionResult> ingestNewTransactions(Rail rail, int maxBatches) {
+        return companyInfoMigration.awaitCompletion()
+                .then(Mono.zip(ibanIndexService.getIndex(),
+                        ingestionCheckpointService.getResumeCursor(rail).defaultIfEmpty(RailCursor.INITIAL)))
+                .flatMap(tuple -> switch (rail) {
+                    case SEPA -> ingestRail(sepaTransactionService, TransactionProcessingService::sepaBatchParams,
+                            tuple.getT2(), maxBatches, tuple.getT1());
+                    case SWIFT -> ingestRail(swiftTransactionService, TransactionProcessingService::swiftBatchParams,
+                            tuple.getT2(), maxBatches, tuple.getT1());
                 });
     }
 
-    private SepaTransactionParams getSepaTransactionParamsForPayer(String iban, String afterTimestamp, String beforeTimestamp, Integer limit) {
-        return new SepaTransactionParams(
-                limit == null ? DEFAULT_LIMIT_FOR_REQUESTS : limit,
-                afterTimestamp,
-                beforeTimestamp,
-                null,
-                iban,
-                null
-        );
+    /**
+     * Runs one rail's ingestion stream: fetches and applies up to {@code limit} batches starting at the given cursor.
+     * The next batch is requested from the last-row cursor of the current one as soon as it is decoded, so up to
+     * {@code prefetchDepth} batches are fetched while an earlier batch is still being applied. Batches are applied
+     * strictly in order and the rail's checkpoint only ever advances past a batch once it has been applied. So at most
+     * one applied batch lies past the checkpoint, which is the replay the idempotent company info updates absorb.
+     * Rails only share the exchange rates and the IBAN index, each one uses its own cursor and {@link RailSettings}.
+     */
+    private <P extends TransactionParams, R extends Transaction> Mono<RailIngestionResult>
+    ingestRail(TransactionService<P, R> transactionService, Function<RailCursor, P> batchParams, RailCursor cursor,
+               int limit, IbanIndex ibanIndex) {
+        var settings = ingestionProperties.rail(transactionService.rail());
+        return transactionStore.start(transactionService.rail(), cursor)
+                .thenMany(fetchBatch(transactionService, batchParams, cursor))
+                .expand(batch -> batch.isEmpty() ? Mono.empty()
+                        : delayFetch(fetchBatch(transactionService, batchParams, batch.nextCursor()), settings))
+                .take(limit)
+                .concatMap(batch -> applyBatch(transactionService, batch, settings, ibanIndex)
+                        .then(checkpoint(transactionService.rail(), batch))
+                        .thenReturn(batch), prefetchDepth)
+                .reduce(RailIngestionResult.startingAt(transactionService.rail(), cursor),
+                        (result, batch) -> result.after(batch.nextCursor(), batch.transactions().size()))
+                .doOnError(e -> log.error("Error processing {} transactions", transactionService.rail(), e));
     }
 
-    private SepaTransactionParams getSepaTransactionParamsForReceiver(String iban, String afterTimestamp, String beforeTimestamp, Integer limit) {
-        return new SepaTransactionParams(
-                limit == null ? DEFAULT_LIMIT_FOR_REQUESTS : limit,
-                afterTimestamp,
-                beforeTimestamp,
-                null,
-                null,
-                iban
-        );
+    private <P extends TransactionParams, R extends Transaction> Mono<IngestionBatch<R>>
+    fetchBatch(TransactionService<P, R> transactionService, Function<RailCursor, P> batchParams, RailCursor cursor) {
+        return Mono.defer(() -> handleGetTransactionsPaginated(transactionService, batchParams.apply(cursor)))
+                .map(transactions -> new IngestionBatch<>(transactions, cursor));
     }
 
-    private SwiftTransactionParams getSwiftTransactionParamsForSender(String iban, String afterTimestamp, String beforeTimestamp, Integer limit) {
-        return new SwiftTransactionParams(
-                limit == null ? DEFAULT_LIMIT_FOR_REQUESTS : limit,
-                afterTimestamp,
-                beforeTimestamp,
-                null,
-                iban,
-                null
-        );
+    private static <T> Mono<T> delayFetch(Mono<T> fetch, RailSettings settings) {
+        return settings.fetchInterval().isZero() ? fetch : fetch.delaySubscription(settings.fetchInterval());
     }
 
-    private SwiftTransactionParams getSwiftTransactionParamsForBeneficiary(String iban, String afterTimestamp, String beforeTimestamp, Integer limit) {
-        return new SwiftTransactionParams(
-                limit == null ? DEFAULT_LIMIT_FOR_REQUESTS : limit,
-                afterTimestamp,
-                beforeTimestamp,
-                null,
-                null,
-                iban
-        );
+    private <P extends TransactionParams, R extends Transaction> Mono<Void>
+    applyBatch(TransactionService<P, R> transactionService, IngestionBatch<R> batch, RailSettings settings,
+               IbanIndex ibanIndex) {
+        log.info("Processing {} {} transactions", batch.transactions().size(), transactionService.rail());
+        return Mono.when(
+                transactionStore.save(transactionService.rail(), batch.transactions()),
+                processedTransactionFilter.filterUnprocessed(batch.transactions())
+                        .flatMap(transactions -> processTransactions(transactions, transactionService, ibanIndex,
+                                settings.concurrency())));
+    }
+
+    private Mono<Void> checkpoint(Rail rail, IngestionBatch<?> batch) {
+        return batch.isEmpty() ? Mono.empty() : ingestionCheckpointService.advance(rail, batch.nextCursor());
+    }
+
+    private static SepaTransactionParams sepaBatchParams(RailCursor cursor) {
+        return new SepaTransactionParams(DEFAULT_LIMIT_FOR_REQUESTS, cursor.afterTimestamp(), cursor.afterUuid(), null, null, null);
+    }
+
+    private static SwiftTransactionParams swiftBatchParams(RailCursor cursor) {
+        return new SwiftTransactionParams(DEFAULT_LIMIT_FOR_REQUESTS, cursor.afterTimestamp(), cursor.afterUuid(), null, null, null);
+    }
+
+    private record IngestionBatch<R extends Transaction>(List<R> transactions, RailCursor cursor) {
+
+        boolean isEmpty() {
+            return transactions.isEmpty();
+        }
+
+        RailCursor nextCursor() {
+            return transactions.isEmpty() ? cursor : RailCursor.after(transactions.get(transactions.size() - 1));
+        }
+    }
+
+    private record TransactionQuery(TransactionContinuationToken token, @Nullable OffsetDateTime before) {
+    }
+
+    @FunctionalInterface
+    private interface ParamsFactory<P extends TransactionParams> {
+        P create(Integer limit, String afterTimestamp, String afterUuid, String beforeTimestamp, String issuer,
+                 String recipient);
     }
 
-}
+}
\ No newline at end of file
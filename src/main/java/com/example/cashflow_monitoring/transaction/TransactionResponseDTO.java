@@ -5,8 +5,18 @@ import com.example.cashflow_monitoring.transaction.swift.SwiftTransaction;
 
 import java.util.List;
 
+/**
+ * A page of a company's transactions. {@code transactions} holds the page in its merged order, by timestamp and id
+ * across both rails, {@code sepaTransactions} and {@code swiftTransactions} hold the same transactions split by rail,
+ * each in that order.
+ */
 public record TransactionResponseDTO(
         List<SepaTransaction> sepaTransactions,
-        List<SwiftTransaction> swiftTransactions
+        List<SwiftTransaction> swiftTransactions,
+        List<RailTransaction> transactions,
+        String continuationToken
 ) {
+
+    public record RailTransaction(Rail rail, Transaction transaction) {
+    }
 }
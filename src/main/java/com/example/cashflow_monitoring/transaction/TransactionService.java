@@ -1,16 +1,30 @@
 package com.example.cashflow_monitoring.transaction;
 
-import com.example.cashflow_monitoring.exchangerate.ExchangeRate;
+import com.example.cashflow_monitoring.company.IbanIndex;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.math.BigDecimal;
 import java.util.List;
-import java.util.Map;
 
 public interface TransactionService<P extends TransactionParams, R extends Transaction> {
+    Rail rail();
+
     Mono<List<R>> getTransactions(P params);
 
-    Mono<List<R>> getPaginatedTransactions(P params);
+    Flux<R> streamTransactions(P params);
+
+    Flux<R> getPaginatedTransactions(P params);
+
+    /**
+     * Like {@link #getPaginatedTransactions(TransactionParams)}, but requests at most {@code firstPageSize} rows with
+     * the first page, later pages use the full page size.
+     */
+    Flux<R> getPaginatedTransactions(P params, int firstPageSize);
+
+    Mono<Void> processTransaction(R transaction, IbanIndex ibanIndex);
+
+    Mono<Void> applyTransaction(R transaction, Integer companyId, boolean isRecipient);
 
-    Mono<Void> processTransaction(R transaction, Mono<List<ExchangeRate>> exchangeRates,
-                                  Mono<Map<String, Integer>> ibanToCompanyIdMap);
+    Mono<BigDecimal> getAmountInEur(R transaction);
 }
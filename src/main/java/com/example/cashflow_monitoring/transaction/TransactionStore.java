@@ -0,0 +1,165 @@
+package com.example.cashflow_monitoring.transaction;
+
+import com.example.cashflow_monitoring.config.ConcurrencyLimiters;
+import com.example.cashflow_monitoring.ingestion.IngestionCheckpointService;
+import com.example.cashflow_monitoring.util.AdaptiveConcurrencyLimiter;
+import org.bson.types.Decimal128;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.index.MongoPersistentEntityIndexResolver;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps every ingested transaction in the {@code transactions} collection, so transaction queries can be answered
+ * locally. Each rail's stored range runs from the cursor its store was started at up to its ingestion checkpoint;
+ * transactions are written before the checkpoint moves past them.
+ */
+@Service
+public class TransactionStore {
+
+    private static final Logger log = LoggerFactory.getLogger(TransactionStore.class);
+    private static final String ID = "_id";
+    private static final String RAIL = "rail";
+    private static final String TIMESTAMP = "timestamp";
+    private final ReactiveMongoTemplate reactiveMongoTemplate;
+    private final IngestionCheckpointService ingestionCheckpointService;
+    private final AdaptiveConcurrencyLimiter concurrencyLimiter;
+    private final Set<Rail> startedRails = ConcurrentHashMap.newKeySet();
+
+    public TransactionStore(ReactiveMongoTemplate reactiveMongoTemplate,
+                            IngestionCheckpointService ingestionCheckpointService,
+                            ConcurrencyLimiters concurrencyLimiters) {
+        this.reactiveMongoTemplate = reactiveMongoTemplate;
+        this.ingestionCheckpointService = ingestionCheckpointService;
+        this.concurrencyLimiter = concurrencyLimiters.mongo();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void ensureIndexes() {
+        var indexResolver = new MongoPersistentEntityIndexResolver(reactiveMongoTemplate.getConverter().getMappingContext());
+        var indexOps = reactiveMongoTemplate.indexOps(StoredTransaction.class);
+        Flux.fromIterable(indexResolver.resolveIndexFor(StoredTransaction.class))
+                .concatMap(indexOps::ensureIndex)
+                .subscribe(index -> log.debug("Ensured transaction store index {}", index),
+                        e -> log.error("Could not create transaction store indexes", e));
+    }
+
+    /**
+     * Makes sure the rail's stored range has a start. Ingestion calls this with the cursor it resumes from before
+     * it stores the first batch.
+     */
+    public Mono<Void> start(Rail rail, RailCursor cursor) {
+        return Mono.defer(() -> startedRails.contains(rail)
+                ? Mono.empty()
+                : ingestionCheckpointService.initStoredFrom(rail, cursor)
+                .doOnSuccess(ignored -> startedRails.add(rail)));
+    }
+
+    public Mono<Void> save(Rail rail, List<? extends Transaction> transactions) {
+        if (transactions.isEmpty()) {
+            return Mono.empty();
+        }
+        var bulkOps = reactiveMongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, StoredTransaction.class);
+        transactions.forEach(transaction -> bulkOps.upsert(
+                Query.query(Criteria.where(ID).is(String.valueOf(transaction.id()))),
+                new Update()
+                        .setOnInsert(RAIL, rail)
+                        .setOnInsert(Side.ISSUER.field, transaction.issuer())
+                        .setOnInsert(Side.RECIPIENT.field, transaction.recipient())
+                        .setOnInsert("amount", toDecimal128(transaction.amount()))
+                        .setOnInsert("currency", transaction.currency())
+                        .setOnInsert(TIMESTAMP, transaction.timestamp())));
+        return concurrencyLimiter.run(bulkOps::execute)
+                .doOnError(e -> log.error("Error storing {} {} transactions", transactions.size(), rail, e))
+                .then();
+    }
+
+    /**
+     * Returns the rail's stored range, or completes empty if nothing has been stored for the rail yet.
+     */
+    public Mono<StoredRange> getStoredRange(Rail rail) {
+        return ingestionCheckpointService.getCheckpoint(rail)
+                .filter(checkpoint -> checkpoint.getStoredFromTimestamp() != null && checkpoint.getStoredFromId() != null
+                        && checkpoint.getCursorTimestamp() != null && checkpoint.getCursorId() != null)
+                .map(checkpoint -> new StoredRange(
+                        TransactionPosition.of(checkpoint.getStoredFromTimestamp(), checkpoint.getStoredFromId()),
+                        TransactionPosition.of(checkpoint.getCursorTimestamp(), checkpoint.getCursorId())));
+    }
+
+    /**
+     * Streams the stored transactions of one IBAN and side after {@code after} up to and including {@code upTo},
+     * ordered by timestamp and id, reading them from the cursor in batches of {@code batchSize}.
+     */
+    public Flux<StoredTransaction> find(Rail rail, Side side, String iban, TransactionPosition after,
+                                        TransactionPosition upTo, @Nullable OffsetDateTime before,
+                                        @Nullable Integer limit, int batchSize) {
+        var criteria = Criteria.where(RAIL).is(rail).and(side.field).is(iban);
+        var bounds = before != null
+                ? new Criteria().andOperator(isAfter(after), isUpTo(upTo), Criteria.where(TIMESTAMP).lt(before))
+                : new Criteria().andOperator(isAfter(after), isUpTo(upTo));
+        var query = Query.query(new Criteria().andOperator(criteria, bounds))
+                .with(Sort.by(TIMESTAMP, ID));
+        if (limit != null) {
+            query.limit(Math.max(limit, 0));
+        }
+        query.cursorBatchSize(batchSize);
+        return reactiveMongoTemplate.find(query, StoredTransaction.class);
+    }
+
+    private static Criteria isAfter(TransactionPosition position) {
+        if (position.id() == null) {
+            return Criteria.where(TIMESTAMP).gt(position.timestamp());
+        }
+        return new Criteria().orOperator(
+                Criteria.where(TIMESTAMP).gt(position.timestamp()),
+                Criteria.where(TIMESTAMP).is(position.timestamp()).and(ID).gt(position.id()));
+    }
+
+    private static Criteria isUpTo(TransactionPosition position) {
+        if (position.id() == null) {
+            return Criteria.where(TIMESTAMP).lte(position.timestamp());
+        }
+        return new Criteria().orOperator(
+                Criteria.where(TIMESTAMP).lt(position.timestamp()),
+                Criteria.where(TIMESTAMP).is(position.timestamp()).and(ID).lte(position.id()));
+    }
+
+    private static Decimal128 toDecimal128(BigDecimal amount) {
+        return new Decimal128(amount.round(MathContext.DECIMAL128));
+    }
+
+    public enum Side {
+        ISSUER("issuer"),
+        RECIPIENT("recipient");
+
+        private final String field;
+
+        Side(String field) {
+            this.field = field;
+        }
+    }
+
+    /**
+     * Stored transactions of a rail lie after {@code from} up to and including {@code to}.
+     */
+    public record StoredRange(TransactionPosition from, TransactionPosition to) {
+    }
+}
@@ -1,19 +1,18 @@
 package com.example.cashflow_monitoring.transaction.sepa;
 
-import com.example.cashflow_monitoring.companyinfo.CompanyInfo;
 import com.example.cashflow_monitoring.companyinfo.CompanyInfoService;
 import com.example.cashflow_monitoring.countrydetail.CountryDetailService;
-import com.example.cashflow_monitoring.exchangerate.ExchangeRate;
 import com.example.cashflow_monitoring.exchangerate.ExchangeRateService;
 import com.example.cashflow_monitoring.transaction.AbstractTransactionService;
+import com.example.cashflow_monitoring.transaction.Rail;
 import com.example.cashflow_monitoring.transaction.TransactionClient;
 import com.example.cashflow_monitoring.transaction.TransactionParamsValidator;
 import com.example.cashflow_monitoring.util.UrlBuilderUtils;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import java.math.BigDecimal;
-import java.util.List;
 
 @Service
 public class SepaTransactionService extends AbstractTransactionService<SepaTransactionDTO, SepaTransactionParams, SepaTransaction> {
@@ -26,6 +25,11 @@ public class SepaTransactionService extends AbstractTransactionService<SepaTrans
         super(transactionClient, validator, urlBuilderUtils, mapper, companyInfoService, exchangeRateService, countryDetailService);
     }
 
+    @Override
+    public Rail rail() {
+        return Rail.SEPA;
+    }
+
     @Override
     protected void validateParams(SepaTransactionParams params) {
         validator.validateSepaParams(params);
@@ -37,8 +41,8 @@ public class SepaTransactionService extends AbstractTransactionService<SepaTrans
     }
 
     @Override
-    public Mono<List<SepaTransactionDTO>> getTransactions(String url) {
-        return transactionClient.getTransactions(url, SepaTransactionDTO[].class);
+    public Flux<SepaTransactionDTO> getTransactions(String url) {
+        return transactionClient.getTransactions(url, SepaTransactionDTO.class);
     }
 
     @Override
@@ -47,18 +51,7 @@ public class SepaTransactionService extends AbstractTransactionService<SepaTrans
     }
 
     @Override
-    protected synchronized Mono<CompanyInfo> updateBalance(CompanyInfo companyInfo, SepaTransaction transaction,
-                                                           Mono<List<ExchangeRate>> exchangeRates, boolean isRecipient) {
-        var updatedBalance = isRecipient
-                ? companyInfo.getBalanceEur().add(transaction.amount())
-                : companyInfo.getBalanceEur().subtract(transaction.amount());
-
-        companyInfo.setBalanceEur(updatedBalance);
-        companyInfo.setLastSepaTransactionId(transaction.id());
-        companyInfo.setLastSepaTransactionTimestamp(transaction.timestamp());
-
-        return countryDetailService.updateCountryDetails(companyInfo, transaction)
-                .then(companyInfoService.updateCompanyInfo(companyInfo))
-                .thenReturn(companyInfo);
+    public Mono<BigDecimal> getAmountInEur(SepaTransaction transaction) {
+        return Mono.just(transaction.amount());
     }
 }
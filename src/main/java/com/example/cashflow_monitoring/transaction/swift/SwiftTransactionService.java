@@ -1,19 +1,18 @@
 package com.example.cashflow_monitoring.transaction.swift;
 
-import com.example.cashflow_monitoring.companyinfo.CompanyInfo;
 import com.example.cashflow_monitoring.companyinfo.CompanyInfoService;
 import com.example.cashflow_monitoring.countrydetail.CountryDetailService;
-import com.example.cashflow_monitoring.exchangerate.ExchangeRate;
 import com.example.cashflow_monitoring.exchangerate.ExchangeRateService;
 import com.example.cashflow_monitoring.transaction.AbstractTransactionService;
+import com.example.cashflow_monitoring.transaction.Rail;
 import com.example.cashflow_monitoring.transaction.TransactionClient;
 import com.example.cashflow_monitoring.transaction.TransactionParamsValidator;
 import com.example.cashflow_monitoring.util.UrlBuilderUtils;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import java.math.BigDecimal;
-import java.util.List;
 
 @Service
 public class SwiftTransactionService extends AbstractTransactionService<SwiftTransactionDTO, SwiftTransactionParams, SwiftTransaction> {
@@ -26,6 +25,11 @@ public class SwiftTransactionService extends AbstractTransactionService<SwiftTra
                 countryDetailService);
     }
 
+    @Override
+    public Rail rail() {
+        return Rail.SWIFT;
+    }
+
     @Override
     protected void validateParams(SwiftTransactionParams params) {
         validator.validateSwiftParams(params);
@@ -37,8 +41,8 @@ public class SwiftTransactionService extends AbstractTransactionService<SwiftTra
     }
 
     @Override
-    public Mono<List<SwiftTransactionDTO>> getTransactions(String url) {
-        return transactionClient.getTransactions(url, SwiftTransactionDTO[].class);
+    public Flux<SwiftTransactionDTO> getTransactions(String url) {
+        return transactionClient.getTransactions(url, SwiftTransactionDTO.class);
     }
 
     @Override
@@ -47,21 +51,7 @@ public class SwiftTransactionService extends AbstractTransactionService<SwiftTra
     }
 
     @Override
-    protected synchronized Mono<CompanyInfo> updateBalance(CompanyInfo companyInfo, SwiftTransaction transaction,
-                                                           Mono<List<ExchangeRate>> exchangeRates, boolean isRecipient) {
-        return (exchangeRateService.getTotalTransactionAmount(transaction, exchangeRates)
-                .flatMap(amountInEuro -> {
-                    var updatedBalance = isRecipient
-                            ? companyInfo.getBalanceEur().add(amountInEuro)
-                            : companyInfo.getBalanceEur().subtract(amountInEuro);
-                    companyInfo.setBalanceEur(updatedBalance);
-                    companyInfo.setLastSwiftTransactionId(transaction.id());
-                    companyInfo.setLastSwiftTransactionTimestamp(transaction.timestamp());
-                    return Mono.just(companyInfo);
-                }))
-                .then(countryDetailService.updateCountryDetails(companyInfo, transaction))
-                .then(companyInfoService.updateCompanyInfo(companyInfo))
-                .thenReturn(companyInfo);
+    public Mono<BigDecimal> getAmountInEur(SwiftTransaction transaction) {
+        return exchangeRateService.getTotalTransactionAmount(transaction);
     }
-
 }
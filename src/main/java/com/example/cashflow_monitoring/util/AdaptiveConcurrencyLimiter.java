@@ -0,0 +1,174 @@
+package com.example.cashflow_monitoring.util;
+
+import com.example.cashflow_monitoring.exception.BadRequestException;
+import com.example.cashflow_monitoring.exception.NotFoundException;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Bounds the calls in flight against one downstream with an AIMD limit. Every call that completes within the latency
+ * threshold while the limit is in use raises the limit by {@code 1 / limit}, i.e. by one per limit's worth of calls;
+ * a slow or failed call cuts it by {@link #BACKOFF_RATIO}. Calls over the limit wait in FIFO order. Client errors
+ * ({@link BadRequestException}, {@link NotFoundException}) and cancellations do not move the limit.
+ * <p>
+ * A permit is held until the call terminates, so only wrap calls that complete on their own, not streams the caller
+ * consumes with backpressure. {@link #runMany} is for streamed responses whose consumer drains them as they arrive.
+ */
+public final class AdaptiveConcurrencyLimiter {
+
+    static final double BACKOFF_RATIO = 0.9;
+    private final int minLimit;
+    private final int maxLimit;
+    private final long latencyThresholdNanos;
+    private final Deque<Waiter> waiters = new ArrayDeque<>();
+    private final AtomicLong drops = new AtomicLong();
+    private double limit;
+    private int inFlight;
+
+    public AdaptiveConcurrencyLimiter(String name, int initialLimit, int minLimit, int maxLimit,
+                                      Duration latencyThreshold, MeterRegistry meterRegistry) {
+        if (minLimit < 1 || maxLimit < minLimit) {
+            throw new IllegalArgumentException("Invalid concurrency limits for " + name + ": " + minLimit + ".." + maxLimit);
+        }
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.latencyThresholdNanos = latencyThreshold.toNanos();
+        this.limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+        Gauge.builder("cashflow.concurrency.limit", this, AdaptiveConcurrencyLimiter::getLimit)
+                .description("Current adaptive concurrency limit")
+                .tag("downstream", name)
+                .register(meterRegistry);
+        Gauge.builder("cashflow.concurrency.in.flight", this, AdaptiveConcurrencyLimiter::getInFlight)
+                .description("Calls currently holding a permit")
+                .tag("downstream", name)
+                .register(meterRegistry);
+        Gauge.builder("cashflow.concurrency.queued", this, AdaptiveConcurrencyLimiter::getQueued)
+                .description("Calls waiting for a permit")
+                .tag("downstream", name)
+                .register(meterRegistry);
+        FunctionCounter.builder("cashflow.concurrency.drops", drops, AtomicLong::doubleValue)
+                .description("Slow or failed calls that decreased the limit")
+                .tag("downstream", name)
+                .register(meterRegistry);
+    }
+
+    public <T> Mono<T> run(Supplier<? extends Mono<T>> call) {
+        return Mono.usingWhen(acquire(), permit -> call.get(),
+                permit -> permit.release(Outcome.SUCCESS),
+                (permit, error) -> permit.release(outcomeOf(error)),
+                permit -> permit.release(Outcome.IGNORED));
+    }
+
+    public <T> Flux<T> runMany(Supplier<? extends Flux<T>> call) {
+        return Flux.usingWhen(acquire(), permit -> call.get(),
+                permit -> permit.release(Outcome.SUCCESS),
+                (permit, error) -> permit.release(outcomeOf(error)),
+                permit -> permit.release(Outcome.IGNORED));
+    }
+
+    public synchronized int getLimit() {
+        return (int) limit;
+    }
+
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    public synchronized int getQueued() {
+        return waiters.size();
+    }
+
+    private Mono<Permit> acquire() {
+        return Mono.<Permit>create(sink -> {
+                    Waiter waiter = null;
+                    synchronized (this) {
+                        if (inFlight < (int) limit) {
+                            inFlight++;
+                        } else {
+                            waiter = new Waiter(sink);
+                            waiters.add(waiter);
+                        }
+                    }
+                    if (waiter == null) {
+                        sink.success(new Permit());
+                        return;
+                    }
+                    var queued = waiter;
+                    sink.onCancel(() -> {
+                        if (queued.claimed.compareAndSet(false, true)) {
+                            synchronized (this) {
+                                waiters.remove(queued);
+                            }
+                        }
+                    });
+                })
+                .doOnDiscard(Permit.class, permit -> permit.release(Outcome.IGNORED).subscribe());
+    }
+
+    private void onRelease(long latencyNanos, Outcome outcome) {
+        var granted = new ArrayList<Waiter>();
+        synchronized (this) {
+            var saturated = inFlight >= (int) limit;
+            inFlight--;
+            if (outcome == Outcome.DROPPED || (outcome == Outcome.SUCCESS && latencyNanos > latencyThresholdNanos)) {
+                limit = Math.max(minLimit, limit * BACKOFF_RATIO);
+                drops.incrementAndGet();
+            } else if (outcome == Outcome.SUCCESS && saturated) {
+                limit = Math.min(maxLimit, limit + 1 / limit);
+            }
+            while (inFlight < (int) limit && !waiters.isEmpty()) {
+                var waiter = waiters.poll();
+                if (waiter.claimed.compareAndSet(false, true)) {
+                    inFlight++;
+                    granted.add(waiter);
+                }
+            }
+        }
+        granted.forEach(waiter -> waiter.sink.success(new Permit()));
+    }
+
+    private static Outcome outcomeOf(Throwable error) {
+        return error instanceof BadRequestException || error instanceof NotFoundException
+                ? Outcome.IGNORED : Outcome.DROPPED;
+    }
+
+    private enum Outcome {
+        SUCCESS,
+        DROPPED,
+        IGNORED
+    }
+
+    private static final class Waiter {
+        private final MonoSink<Permit> sink;
+        private final AtomicBoolean claimed = new AtomicBoolean();
+
+        private Waiter(MonoSink<Permit> sink) {
+            this.sink = sink;
+        }
+    }
+
+    private final class Permit {
+        private final long acquiredAt = System.nanoTime();
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Mono<Void> release(Outcome outcome) {
+            return Mono.fromRunnable(() -> {
+                if (released.compareAndSet(false, true)) {
+                    onRelease(System.nanoTime() - acquiredAt, outcome);
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.example.cashflow_monitoring.util;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.time.Duration;
+
+/**
+ * Page size for a paginated upstream resource, sized so that one page takes about the target latency. Tracks a moving
+ * average of the time per returned item and derives the page size from it, between {@code minPageSize} and
+ * {@code maxPageSize}. Until a page has been observed the maximum is used.
+ */
+public final class AdaptivePageSize {
+
+    private static final double SMOOTHING = 0.2;
+    private final int minPageSize;
+    private final int maxPageSize;
+    private final double targetLatencyNanos;
+    private double nanosPerItem;
+
+    public AdaptivePageSize(String name, int minPageSize, int maxPageSize, Duration targetLatency,
+                            MeterRegistry meterRegistry) {
+        if (minPageSize < 1 || maxPageSize < minPageSize) {
+            throw new IllegalArgumentException("Invalid page sizes for " + name + ": " + minPageSize + ".." + maxPageSize);
+        }
+        this.minPageSize = minPageSize;
+        this.maxPageSize = maxPageSize;
+        this.targetLatencyNanos = targetLatency.toNanos();
+        Gauge.builder("cashflow.page.size", this, AdaptivePageSize::get)
+                .description("Current adaptive upstream page size")
+                .tag("name", name)
+                .register(meterRegistry);
+    }
+
+    public synchronized int get() {
+        if (nanosPerItem <= 0) {
+            return maxPageSize;
+        }
+        return (int) Math.max(minPageSize, Math.min(maxPageSize, targetLatencyNanos / nanosPerItem));
+    }
+
+    /**
+     * Records a completed page. Empty pages carry no per-item cost and are ignored.
+     */
+    public synchronized void record(int items, long latencyNanos) {
+        if (items <= 0) {
+            return;
+        }
+        var observed = (double) latencyNanos / items;
+        nanosPerItem = nanosPerItem <= 0 ? observed : nanosPerItem + SMOOTHING * (observed - nanosPerItem);
+    }
+}
@@ -0,0 +1,32 @@
+package com.example.cashflow_monitoring.util;
+
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Runs a task in the background on a fixed interval. Runs never overlap: ticks that fire while a run is still going
+ * are dropped instead of queued. A failed run is handed to the error handler and the loop continues with the next
+ * tick. The returned disposable stops the loop.
+ */
+public final class BackgroundLoop {
+
+    private BackgroundLoop() {
+    }
+
+    public static Disposable start(Duration initialDelay, Duration interval, Supplier<? extends Mono<?>> task,
+                                   Consumer<Throwable> onError) {
+        return Flux.interval(initialDelay, interval)
+                .onBackpressureDrop()
+                .concatMap(tick -> Mono.defer(task)
+                        .onErrorResume(e -> {
+                            onError.accept(e);
+                            return Mono.empty();
+                        }), 0)
+                .subscribe();
+    }
+}
@@ -0,0 +1,118 @@
+package com.example.cashflow_monitoring.util;
+
+import com.example.cashflow_monitoring.exception.BadRequestException;
+import com.example.cashflow_monitoring.exception.NotFoundException;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.lang.Nullable;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Stops calling a failing upstream. After {@code failureThreshold} consecutive failed calls the circuit opens: calls
+ * go straight to their fallback and a background probe retries the upstream every {@code openDuration} until it
+ * succeeds, which closes the circuit again. Live traffic never probes. Client errors ({@link BadRequestException},
+ * {@link NotFoundException}) are answers, not failures, and are passed through.
+ */
+public final class CircuitBreaker {
+
+    private static final Logger log = LoggerFactory.getLogger(CircuitBreaker.class);
+    private final String name;
+    private final int failureThreshold;
+    private final Duration openDuration;
+    private final Supplier<? extends Mono<?>> probe;
+    private final AtomicBoolean open = new AtomicBoolean();
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private final AtomicLong rejected = new AtomicLong();
+    @Nullable
+    private volatile Disposable probeTask;
+
+    public CircuitBreaker(String name, int failureThreshold, Duration openDuration, Supplier<? extends Mono<?>> probe,
+                          MeterRegistry meterRegistry) {
+        this.name = name;
+        this.failureThreshold = Math.max(1, failureThreshold);
+        this.openDuration = openDuration;
+        this.probe = probe;
+        Gauge.builder("cashflow.circuit.open", open, state -> state.get() ? 1 : 0)
+                .description("Whether the circuit breaker is open")
+                .tag("name", name)
+                .register(meterRegistry);
+        FunctionCounter.builder("cashflow.circuit.rejected", rejected, AtomicLong::doubleValue)
+                .description("Calls sent to the fallback while the circuit was open")
+                .tag("name", name)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Runs the call while the circuit is closed. A failure, or any call while the circuit is open, is answered by
+     * {@code fallback} with the failure or an {@link OpenException}.
+     */
+    public <T> Mono<T> execute(Supplier<? extends Mono<T>> call, Function<Throwable, ? extends Mono<T>> fallback) {
+        return Mono.defer(() -> {
+            if (open.get()) {
+                rejected.incrementAndGet();
+                return fallback.apply(new OpenException(name));
+            }
+            return call.get()
+                    .doOnSuccess(ignored -> consecutiveFailures.set(0))
+                    .onErrorResume(error -> !isClientError(error), error -> {
+                        onFailure(error);
+                        return fallback.apply(error);
+                    });
+        });
+    }
+
+    public boolean isOpen() {
+        return open.get();
+    }
+
+    public void dispose() {
+        var task = probeTask;
+        if (task != null) {
+            task.dispose();
+        }
+    }
+
+    private void onFailure(Throwable error) {
+        if (consecutiveFailures.incrementAndGet() < failureThreshold || !open.compareAndSet(false, true)) {
+            return;
+        }
+        log.warn("Opening circuit {} after {} consecutive failures, last: {}", name, failureThreshold, error.toString());
+        probeTask = Mono.defer(probe)
+                .then()
+                .retryWhen(Retry.fixedDelay(Long.MAX_VALUE, openDuration)
+                        .doBeforeRetry(signal -> log.debug("Circuit {} probe failed: {}", name, signal.failure().toString())))
+                .delaySubscription(openDuration)
+                .subscribe(null, e -> log.error("Circuit {} probe stopped", name, e), this::close);
+    }
+
+    private void close() {
+        consecutiveFailures.set(0);
+        open.set(false);
+        log.info("Closing circuit {}, upstream recovered", name);
+    }
+
+    private static boolean isClientError(Throwable error) {
+        return error instanceof BadRequestException || error instanceof NotFoundException;
+    }
+
+    /**
+     * Raised instead of calling the upstream while the circuit is open.
+     */
+    public static final class OpenException extends RuntimeException {
+        public OpenException(String name) {
+            super("Circuit " + name + " is open, upstream unavailable");
+        }
+    }
+}
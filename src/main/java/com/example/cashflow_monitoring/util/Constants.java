@@ -8,6 +8,7 @@ public class Constants {
     public static final String AFTER_TIMESTAMP = "after-timestamp";
     public static final String BEFORE_TIMESTAMP = "before-timestamp";
     public static final String AFTER_UUID = "after-uuid";
+    public static final String CONTINUATION_TOKEN = "continuation-token";
     public static final String SENDER = "sender";
     public static final String BENEFICIARY = "beneficiary";
     public static final String COMPANIES = "companies";
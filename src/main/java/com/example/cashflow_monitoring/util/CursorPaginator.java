@@ -0,0 +1,60 @@
+package com.example.cashflow_monitoring.util;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.util.List;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+
+/**
+ * Lazily walks a keyset-paginated upstream resource. A page is only requested once the previous one has been
+ * consumed downstream, so at most one page is held in memory and cancelling the returned flux stops the fetching.
+ * The cursor of the next page is queued when a page arrives, but only subscribed to once every item of the current
+ * page has been emitted, so a caller that stops after a page never triggers a call for the next one.
+ */
+public final class CursorPaginator {
+
+    private CursorPaginator() {
+    }
+
+    public static <C, T> Flux<T> paginate(C initialCursor, Function<C, Flux<T>> pageFetcher,
+                                          BiFunction<C, T, C> nextCursor, int pageSize) {
+        if (pageSize <= 0) {
+            return Flux.empty();
+        }
+        return paginate(initialCursor, pageFetcher, nextCursor, cursor -> pageSize);
+    }
+
+    /**
+     * Like {@link #paginate(Object, Function, BiFunction, int)} for pages whose size varies, {@code pageSizeOf}
+     * returns the size requested with a cursor. A page shorter than its requested size is the last one.
+     */
+    public static <C, T> Flux<T> paginate(C initialCursor, Function<C, Flux<T>> pageFetcher,
+                                          BiFunction<C, T, C> nextCursor, ToIntFunction<C> pageSizeOf) {
+        return Flux.defer(() -> {
+            var cursors = Sinks.many().unicast().<C>onBackpressureBuffer();
+            cursors.tryEmitNext(initialCursor);
+            return cursors.asFlux()
+                    .concatMap(cursor -> fetchPage(cursor, pageFetcher)
+                            .doOnNext(items -> {
+                                if (isLastPage(items, pageSizeOf.applyAsInt(cursor))) {
+                                    cursors.tryEmitComplete();
+                                } else {
+                                    cursors.tryEmitNext(nextCursor.apply(cursor, items.getLast()));
+                                }
+                            })
+                            .flatMapIterable(Function.identity()), 0);
+        });
+    }
+
+    private static <C, T> Mono<List<T>> fetchPage(C cursor, Function<C, Flux<T>> pageFetcher) {
+        return Flux.defer(() -> pageFetcher.apply(cursor)).collectList();
+    }
+
+    private static boolean isLastPage(List<?> items, int pageSize) {
+        return items.isEmpty() || items.size() < pageSize;
+    }
+}
@@ -0,0 +1,18 @@
+package com.example.cashflow_monitoring.util;
+
+import java.time.Instant;
+
+/**
+ * A value read from the upstream. A stale value is the last known-good answer, served while the upstream is
+ * unavailable; {@code fetchedAt} is when it was actually read.
+ */
+public record Fetched<T>(T value, Instant fetchedAt, boolean stale) {
+
+    public static <T> Fetched<T> fresh(T value) {
+        return new Fetched<>(value, Instant.now(), false);
+    }
+
+    public Fetched<T> asStale() {
+        return new Fetched<>(value, fetchedAt, true);
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.cashflow_monitoring.util;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces concurrent identical requests: while a call for a key is in flight, further callers for the same key
+ * join it instead of starting their own. Joined callers receive every element the call emitted so far followed by the
+ * rest. The key is released as soon as the call terminates, so results are never served after the fact. The call is
+ * cancelled once every caller has cancelled.
+ */
+public final class SingleFlight<K, V> {
+
+    private final Map<K, Flux<V>> inFlight = new ConcurrentHashMap<>();
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong executions = new AtomicLong();
+
+    public SingleFlight(String name, MeterRegistry meterRegistry) {
+        FunctionCounter.builder("cashflow.singleflight.requests", requests, AtomicLong::doubleValue)
+                .description("Calls requested through the single-flight group")
+                .tag("name", name)
+                .register(meterRegistry);
+        FunctionCounter.builder("cashflow.singleflight.executions", executions, AtomicLong::doubleValue)
+                .description("Calls actually executed by the single-flight group")
+                .tag("name", name)
+                .register(meterRegistry);
+        Gauge.builder("cashflow.singleflight.collapse.ratio", this, SingleFlight::collapseRatio)
+                .description("Share of requested calls that joined a call already in flight")
+                .tag("name", name)
+                .register(meterRegistry);
+        Gauge.builder("cashflow.singleflight.in.flight", inFlight, Map::size)
+                .description("Distinct keys with a call in flight")
+                .tag("name", name)
+                .register(meterRegistry);
+    }
+
+    public Mono<V> execute(K key, Supplier<? extends Mono<V>> call) {
+        return executeMany(key, () -> call.get().flux()).singleOrEmpty();
+    }
+
+    public Flux<V> executeMany(K key, Supplier<? extends Flux<V>> call) {
+        return Flux.defer(() -> {
+            requests.incrementAndGet();
+            return inFlight.computeIfAbsent(key, ignored -> start(key, call));
+        });
+    }
+
+    public double collapseRatio() {
+        var requested = requests.get();
+        return requested == 0 ? 0 : 1 - (double) executions.get() / requested;
+    }
+
+    private Flux<V> start(K key, Supplier<? extends Flux<V>> call) {
+        var shared = new AtomicReference<Flux<V>>();
+        var flight = Flux.defer(() -> {
+                    executions.incrementAndGet();
+                    return call.get();
+                })
+                .doFinally(signal -> inFlight.remove(key, shared.get()))
+                .replay()
+                .refCount();
+        shared.set(flight);
+        return flight;
+    }
+}
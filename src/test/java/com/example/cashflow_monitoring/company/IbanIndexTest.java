@@ -0,0 +1,109 @@
+package com.example.cashflow_monitoring.company;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class IbanIndexTest {
+
+    @Test
+    void shouldResolveNormalizedIbans() {
+        var index = new IbanIndex();
+        index.put("DE89 3704 0044 0532 0130 00", 1);
+
+        assertEquals(1, index.getCompanyId("DE89370400440532013000"));
+        assertEquals(1, index.getCompanyId("de89 3704 0044 0532 0130 00"));
+        assertNull(index.getCompanyId("DE8937040044053201300"));
+        assertNull(index.getCompanyId(null));
+    }
+
+    @Test
+    void shouldReplaceAndRemoveCompanyIbans() {
+        var index = new IbanIndex();
+        index.putCompany(1, List.of("NL91ABNA0417164300", "NL20INGB0001234567"));
+        index.putCompany(2, List.of("FR1420041010050500013M02606"));
+
+        index.putCompany(1, List.of("NL20INGB0001234567"));
+        assertNull(index.getCompanyId("NL91ABNA0417164300"));
+        assertEquals(1, index.getCompanyId("NL20INGB0001234567"));
+
+        index.removeCompany(1);
+        assertNull(index.getCompanyId("NL20INGB0001234567"));
+        assertEquals(2, index.getCompanyId("FR1420041010050500013M02606"));
+        assertEquals(1, index.size());
+    }
+
+    @Test
+    void shouldKeepIbansMovedToAnotherCompanyWhenTheFormerOwnerIsRemoved() {
+        var index = new IbanIndex();
+        index.putCompany(1, List.of("NL91ABNA0417164300"));
+        index.putCompany(2, List.of("NL91ABNA0417164300"));
+
+        index.removeCompany(1);
+
+        assertEquals(2, index.getCompanyId("NL91ABNA0417164300"));
+    }
+
+    @Test
+    void shouldOnlyAddMissingCompaniesFromOlderIndex() {
+        var older = new IbanIndex();
+        older.putCompany(1, List.of("NL91ABNA0417164300"));
+        older.putCompany(2, List.of("FR1420041010050500013M02606", "NL20INGB0001234567"));
+        var index = new IbanIndex();
+        index.putCompany(1, List.of("GB29NWBK60161331926819"));
+        index.putCompany(3, List.of("NL20INGB0001234567"));
+
+        index.putMissingCompanies(older);
+
+        assertNull(index.getCompanyId("NL91ABNA0417164300"));
+        assertEquals(2, index.getCompanyId("FR1420041010050500013M02606"));
+        assertEquals(3, index.getCompanyId("NL20INGB0001234567"));
+        assertEquals(3, index.size());
+    }
+
+    @Test
+    void shouldMatchHashMapUnderRandomPutsAndRemoves() {
+        var index = new IbanIndex();
+        var expected = new HashMap<String, Integer>();
+        var random = new Random(42);
+        for (int i = 0; i < 50_000; i++) {
+            var iban = "DE" + random.nextInt(2_000);
+            if (random.nextInt(3) < 2) {
+                var companyId = random.nextInt(100);
+                index.put(iban, companyId);
+                expected.put(iban, companyId);
+            } else {
+                index.remove(iban);
+                expected.remove(iban);
+            }
+        }
+
+        for (int i = 0; i < 2_000; i++) {
+            assertEquals(expected.get("DE" + i), index.getCompanyId("DE" + i));
+        }
+        assertEquals(expected.size(), index.size());
+    }
+
+    @Test
+    void shouldRestoreSnapshot(@TempDir Path dir) throws IOException {
+        var index = new IbanIndex();
+        index.putCompany(7, List.of("GB29NWBK60161331926819", "GB94BARC10201530093459"));
+        var file = dir.resolve("iban-index.snapshot");
+
+        index.writeSnapshot(file, 7);
+        var snapshot = IbanIndex.readSnapshot(file);
+
+        assertEquals(7, snapshot.syncedUpToCompanyId());
+        assertEquals(2, snapshot.index().size());
+        assertEquals(7, snapshot.index().getCompanyId("GB29NWBK60161331926819"));
+        assertEquals(7, snapshot.index().getCompanyId("GB94BARC10201530093459"));
+    }
+}
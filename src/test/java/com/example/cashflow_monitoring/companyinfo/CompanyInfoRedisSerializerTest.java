@@ -0,0 +1,67 @@
+package com.example.cashflow_monitoring.companyinfo;
+
+import com.example.cashflow_monitoring.countrydetail.CountryDetail;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.math.BigDecimal;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CompanyInfoRedisSerializerTest {
+
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    private final CompanyInfoRedisSerializer binary = new CompanyInfoRedisSerializer(objectMapper, CompanyInfoRedisSerializer.Format.BINARY);
+    private final CompanyInfoRedisSerializer json = new CompanyInfoRedisSerializer(objectMapper, CompanyInfoRedisSerializer.Format.JSON);
+
+    @Test
+    void shouldRoundTripBinaryFormat() {
+        var companyInfo = companyInfo();
+
+        var bytes = binary.serialize(companyInfo);
+
+        assertEquals(CompanyInfoRedisSerializer.VERSION, bytes[0]);
+        assertEquals(companyInfo, binary.deserialize(bytes));
+        assertTrue(bytes.length * 3 < json.serialize(companyInfo).length);
+    }
+
+    @Test
+    void shouldRoundTripMissingFields() {
+        var companyInfo = new CompanyInfo();
+        companyInfo.setId("not-an-object-id");
+        companyInfo.setCompanyId(7);
+
+        assertEquals(companyInfo, binary.deserialize(binary.serialize(companyInfo)));
+    }
+
+    @Test
+    void shouldReadJsonWrittenByOlderInstances() {
+        var companyInfo = companyInfo();
+
+        assertEquals(companyInfo, binary.deserialize(json.serialize(companyInfo)));
+        assertNull(binary.deserialize(new byte[0]));
+    }
+
+    private static CompanyInfo companyInfo() {
+        var companyInfo = new CompanyInfo();
+        companyInfo.setId("66f1c2a9e4b0a1b2c3d4e5f6");
+        companyInfo.setCompanyId(42);
+        companyInfo.setBalanceEur(new BigDecimal("-1234567.8901"));
+        companyInfo.setLastSepaTransactionId(UUID.randomUUID());
+        companyInfo.setLastSepaTransactionTimestamp(OffsetDateTime.of(2024, 10, 1, 12, 30, 15, 123456000, ZoneOffset.UTC));
+        companyInfo.setLastSwiftTransactionId(UUID.randomUUID());
+        companyInfo.setLastSwiftTransactionTimestamp(OffsetDateTime.of(2024, 10, 2, 8, 0, 0, 0, ZoneOffset.UTC));
+        companyInfo.setCountryDetails(List.of(
+                new CountryDetail("DE", 120),
+                new CountryDetail("NL", 3),
+                new CountryDetail("FR", 98765)));
+        return companyInfo;
+    }
+}
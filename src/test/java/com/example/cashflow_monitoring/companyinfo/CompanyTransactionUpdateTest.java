@@ -0,0 +1,119 @@
+package com.example.cashflow_monitoring.companyinfo;
+
+import com.example.cashflow_monitoring.config.mongo.MongoConfig;
+import com.example.cashflow_monitoring.countrydetail.CountryDetail;
+import com.example.cashflow_monitoring.transaction.Rail;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.data.mongo.DataMongoTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.math.BigDecimal;
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@DataMongoTest
+@Import(MongoConfig.class)
+class CompanyTransactionUpdateTest {
+
+    private static final int COMPANY_ID = 7;
+    private static final OffsetDateTime NOON = OffsetDateTime.parse("2024-01-01T12:00:00Z");
+
+    @Autowired
+    private CompanyInfoRepository companyInfoRepository;
+
+    @Autowired
+    private ReactiveMongoTemplate reactiveMongoTemplate;
+
+    @BeforeEach
+    void setup() {
+        companyInfoRepository.deleteAll().block();
+        var companyInfo = new CompanyInfo();
+        companyInfo.setCompanyId(COMPANY_ID);
+        companyInfo.setBalanceEur(BigDecimal.TEN);
+        companyInfo.setCountryDetails(List.of(new CountryDetail("EUR", 2)));
+        companyInfoRepository.save(companyInfo).block();
+    }
+
+    @Test
+    void shouldApplyBalanceCountsAndLastTransaction() {
+        var usd = side(UUID.randomUUID(), true, NOON, "5", "USD");
+        var eur = side(UUID.randomUUID(), false, NOON.minusHours(1), "-3", "EUR");
+
+        var companyInfo = apply(List.of(usd, eur));
+
+        assertEquals(0, new BigDecimal("12").compareTo(companyInfo.getBalanceEur()));
+        assertEquals(List.of(new CountryDetail("EUR", 3), new CountryDetail("USD", 1)), companyInfo.getCountryDetails());
+        assertEquals(usd.transactionId(), companyInfo.getLastSepaTransactionId());
+        assertEquals(NOON.toInstant(), companyInfo.getLastSepaTransactionTimestamp().toInstant());
+    }
+
+    @Test
+    void shouldSkipTransactionSidesAlreadyApplied() {
+        var transaction = side(UUID.randomUUID(), true, NOON, "5", "EUR");
+        apply(List.of(transaction));
+
+        var companyInfo = apply(List.of(transaction, side(UUID.randomUUID(), true, NOON, "1", "EUR")));
+
+        assertEquals(0, new BigDecimal("16").compareTo(companyInfo.getBalanceEur()));
+        assertEquals(List.of(new CountryDetail("EUR", 4)), companyInfo.getCountryDetails());
+    }
+
+    @Test
+    void shouldApplyBothSidesOfATransferWithinTheCompany() {
+        var id = UUID.randomUUID();
+
+        var companyInfo = apply(List.of(side(id, false, NOON, "-5", "EUR"), side(id, true, NOON, "5", "EUR")));
+
+        assertEquals(0, BigDecimal.TEN.compareTo(companyInfo.getBalanceEur()));
+        assertEquals(List.of(new CountryDetail("EUR", 4)), companyInfo.getCountryDetails());
+    }
+
+    @Test
+    void shouldKeepLaterLastTransaction() {
+        var later = side(UUID.randomUUID(), true, NOON, "1", "EUR");
+        apply(List.of(later));
+
+        var companyInfo = apply(List.of(side(UUID.randomUUID(), true, NOON.minusMinutes(1), "1", "EUR")));
+
+        assertEquals(later.transactionId(), companyInfo.getLastSepaTransactionId());
+        assertEquals(NOON.toInstant(), companyInfo.getLastSepaTransactionTimestamp().toInstant());
+    }
+
+    @Test
+    void shouldNotMatchSingleSideAlreadyApplied() {
+        var transaction = side(UUID.randomUUID(), true, NOON, "5", "EUR");
+
+        var first = applyOne(transaction);
+        var replayed = applyOne(transaction);
+        var otherSide = applyOne(side(transaction.transactionId(), false, NOON, "-5", "EUR"));
+
+        assertEquals(1, first);
+        assertEquals(0, replayed);
+        assertEquals(1, otherSide);
+        assertEquals(0, BigDecimal.TEN.compareTo(companyInfoRepository.findByCompanyId(COMPANY_ID).block().getBalanceEur()));
+    }
+
+    private long applyOne(CompanyTransaction transaction) {
+        return reactiveMongoTemplate.updateFirst(CompanyTransactionUpdate.notYetApplied(COMPANY_ID, transaction),
+                CompanyTransactionUpdate.of(List.of(transaction)), CompanyInfo.class).block().getModifiedCount();
+    }
+
+    private CompanyInfo apply(List<CompanyTransaction> transactions) {
+        reactiveMongoTemplate.updateFirst(Query.query(Criteria.where("companyId").is(COMPANY_ID)),
+                CompanyTransactionUpdate.of(transactions), CompanyInfo.class).block();
+        return companyInfoRepository.findByCompanyId(COMPANY_ID).block();
+    }
+
+    private static CompanyTransaction side(UUID id, boolean incoming, OffsetDateTime timestamp, String amount,
+                                           String currency) {
+        return new CompanyTransaction(id, Rail.SEPA, incoming, timestamp, new BigDecimal(amount), currency);
+    }
+}
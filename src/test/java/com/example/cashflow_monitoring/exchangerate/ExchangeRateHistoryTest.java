@@ -0,0 +1,55 @@
+package com.example.cashflow_monitoring.exchangerate;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class ExchangeRateHistoryTest {
+
+    private static final Instant JANUARY = Instant.parse("2024-01-01T00:00:00Z");
+    private static final Instant FEBRUARY = Instant.parse("2024-02-01T00:00:00Z");
+
+    private final ExchangeRateHistory history = ExchangeRateHistory.EMPTY
+            .append(ExchangeRateSnapshot.of(List.of(new ExchangeRate("USD", 0.9, 1.0)), JANUARY))
+            .append(ExchangeRateSnapshot.of(List.of(new ExchangeRate("USD", 0.8, 1.0)), FEBRUARY));
+
+    @Test
+    void shouldUseRateEffectiveAtTransactionTime() {
+        assertEquals(BigDecimal.valueOf(0.9), history.getEurRate("USD", JANUARY));
+        assertEquals(BigDecimal.valueOf(0.9), history.getEurRate("USD", Instant.parse("2024-01-15T00:00:00Z")));
+        assertEquals(BigDecimal.valueOf(0.8), history.getEurRate("USD", FEBRUARY));
+        assertEquals(BigDecimal.valueOf(0.8), history.getEurRate("USD", Instant.parse("2024-06-01T00:00:00Z")));
+    }
+
+    @Test
+    void shouldUseFirstKnownRateBeforeHistoryStarts() {
+        assertEquals(BigDecimal.valueOf(0.9), history.getEurRate("USD", Instant.parse("2023-06-01T00:00:00Z")));
+    }
+
+    @Test
+    void shouldReturnNullForUnknownCurrency() {
+        assertNull(history.getEurRate("GBP", FEBRUARY));
+    }
+
+    @Test
+    void shouldMergeRatesOfBothHistories() {
+        var march = Instant.parse("2024-03-01T00:00:00Z");
+        var refreshed = ExchangeRateHistory.EMPTY
+                .append(ExchangeRateSnapshot.of(List.of(new ExchangeRate("USD", 0.8, 1.0)), FEBRUARY))
+                .append(ExchangeRateSnapshot.of(List.of(new ExchangeRate("USD", 0.7, 1.0),
+                        new ExchangeRate("GBP", 1.2, 1.0)), march));
+
+        var merged = refreshed.merge(history);
+
+        assertEquals(BigDecimal.valueOf(0.9), merged.getEurRate("USD", JANUARY));
+        assertEquals(BigDecimal.valueOf(0.8), merged.getEurRate("USD", FEBRUARY));
+        assertEquals(BigDecimal.valueOf(0.7), merged.getEurRate("USD", march));
+        assertEquals(BigDecimal.valueOf(1.2), merged.getEurRate("GBP", march));
+        assertEquals(march, merged.getLatest().getFetchedAt());
+    }
+}
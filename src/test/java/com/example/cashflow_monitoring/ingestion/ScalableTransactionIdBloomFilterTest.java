@@ -0,0 +1,47 @@
+package com.example.cashflow_monitoring.ingestion;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ScalableTransactionIdBloomFilterTest {
+
+    @Test
+    void shouldGrowPastInitialCapacityWithoutSaturating() {
+        var filter = ScalableTransactionIdBloomFilter.create(1_000, 0.01);
+        List<UUID> ids = IntStream.range(0, 20_000).mapToObj(i -> UUID.randomUUID()).toList();
+
+        ids.forEach(filter::put);
+
+        ids.forEach(id -> assertTrue(filter.mightContain(id)));
+        assertTrue(filter.layerCount() > 1);
+        var falsePositives = IntStream.range(0, 10_000)
+                .filter(i -> filter.mightContain(UUID.randomUUID()))
+                .count();
+        assertTrue(falsePositives < 200, "false positives: " + falsePositives);
+    }
+
+    @Test
+    void shouldRestoreSnapshot(@TempDir Path dir) throws IOException {
+        var filter = ScalableTransactionIdBloomFilter.create(1_000, 0.01);
+        List<UUID> ids = IntStream.range(0, 3_000).mapToObj(i -> UUID.randomUUID()).toList();
+        ids.forEach(filter::put);
+        var file = dir.resolve("filter.bloom");
+
+        filter.writeSnapshot(file, 42L);
+        var snapshot = ScalableTransactionIdBloomFilter.readSnapshot(file);
+
+        assertEquals(42L, snapshot.takenAtMillis());
+        assertEquals(filter.layerCount(), snapshot.filter().layerCount());
+        assertTrue(snapshot.filter().hasSizing(1_000, 0.01));
+        ids.forEach(id -> assertTrue(snapshot.filter().mightContain(id)));
+    }
+}
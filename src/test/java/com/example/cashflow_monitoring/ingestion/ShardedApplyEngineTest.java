@@ -0,0 +1,41 @@
+package com.example.cashflow_monitoring.ingestion;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ShardedApplyEngineTest {
+
+    private final ShardedApplyEngine engine = new ShardedApplyEngine(1, 1, new SimpleMeterRegistry());
+
+    @AfterEach
+    void shutdown() {
+        engine.shutdown();
+    }
+
+    @Test
+    void shouldApplyWorkSubmittedToAFullShardInSubmissionOrder() {
+        var applied = new CopyOnWriteArrayList<Integer>();
+        var first = Sinks.<Void>empty();
+        var firstResult = engine.submit(1, () -> first.asMono().then(Mono.fromRunnable(() -> applied.add(0))))
+                .toFuture();
+        List<CompletableFuture<Void>> laterResults = IntStream.range(1, 6)
+                .mapToObj(index -> engine.submit(1, () -> Mono.fromRunnable(() -> applied.add(index))).toFuture())
+                .toList();
+
+        first.tryEmitEmpty();
+
+        firstResult.join();
+        laterResults.forEach(CompletableFuture::join);
+        assertEquals(List.of(0, 1, 2, 3, 4, 5), applied);
+    }
+}
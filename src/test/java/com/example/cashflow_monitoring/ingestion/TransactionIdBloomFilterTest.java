@@ -0,0 +1,34 @@
+package com.example.cashflow_monitoring.ingestion;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TransactionIdBloomFilterTest {
+
+    @Test
+    void shouldContainEveryInsertedId() {
+        var filter = TransactionIdBloomFilter.create(10_000, 0.01);
+        List<UUID> ids = IntStream.range(0, 10_000).mapToObj(i -> UUID.randomUUID()).toList();
+
+        ids.forEach(filter::put);
+
+        ids.forEach(id -> assertTrue(filter.mightContain(id)));
+    }
+
+    @Test
+    void shouldKeepFalsePositivesNearConfiguredProbability() {
+        var filter = TransactionIdBloomFilter.create(10_000, 0.01);
+        IntStream.range(0, 10_000).forEach(i -> filter.put(UUID.randomUUID()));
+
+        var falsePositives = IntStream.range(0, 10_000)
+                .filter(i -> filter.mightContain(UUID.randomUUID()))
+                .count();
+
+        assertTrue(falsePositives < 300, "false positives: " + falsePositives);
+    }
+}
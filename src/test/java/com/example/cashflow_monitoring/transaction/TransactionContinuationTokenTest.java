@@ -0,0 +1,49 @@
+package com.example.cashflow_monitoring.transaction;
+
+import com.example.cashflow_monitoring.exception.BadRequestException;
+import com.example.cashflow_monitoring.transaction.TransactionContinuationToken.StreamKey;
+import com.example.cashflow_monitoring.transaction.TransactionContinuationToken.StreamedTransaction;
+import com.example.cashflow_monitoring.transaction.TransactionStore.Side;
+import com.example.cashflow_monitoring.transaction.sepa.SepaTransaction;
+import com.example.cashflow_monitoring.transaction.swift.SwiftTransaction;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class TransactionContinuationTokenTest {
+
+    private static final String IBAN = "NL91ABNA0417164300";
+
+    @Test
+    void shouldResumeEachStreamAfterItsLastTransaction() {
+        var after = OffsetDateTime.parse("2024-10-01T00:00:00Z");
+        var sepa = new SepaTransaction(UUID.randomUUID(), IBAN, "DE89370400440532013000", BigDecimal.TEN, "EUR",
+                OffsetDateTime.parse("2024-10-01T10:15:30.123456Z"));
+        var swift = new SwiftTransaction(UUID.randomUUID(), "GB33BUKB20201555555555", IBAN, BigDecimal.ONE, "USD",
+                OffsetDateTime.parse("2024-10-02T08:00:00Z"));
+        var sepaIssuer = new StreamKey(IBAN, Rail.SEPA, Side.ISSUER);
+        var swiftRecipient = new StreamKey(IBAN, Rail.SWIFT, Side.RECIPIENT);
+
+        var token = TransactionContinuationToken.start(7, after)
+                .advance(List.of(new StreamedTransaction(sepaIssuer, sepa), new StreamedTransaction(swiftRecipient, swift)));
+        var decoded = TransactionContinuationToken.decode(token.encode(), 7);
+
+        assertEquals(0, TransactionPosition.of(sepa).compareTo(decoded.positionOf(sepaIssuer)));
+        assertEquals(0, TransactionPosition.of(swift).compareTo(decoded.positionOf(swiftRecipient)));
+        assertEquals(TransactionPosition.after(after), decoded.positionOf(new StreamKey(IBAN, Rail.SWIFT, Side.ISSUER)));
+    }
+
+    @Test
+    void shouldRejectForeignAndMalformedTokens() {
+        var token = TransactionContinuationToken.start(7, null).encode();
+
+        assertThrows(BadRequestException.class, () -> TransactionContinuationToken.decode(token, 8));
+        assertThrows(BadRequestException.class, () -> TransactionContinuationToken.decode("not a token", 7));
+    }
+}
@@ -0,0 +1,55 @@
+package com.example.cashflow_monitoring.util;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AdaptiveConcurrencyLimiterTest {
+
+    private final AdaptiveConcurrencyLimiter limiter =
+            new AdaptiveConcurrencyLimiter("test", 1, 1, 4, Duration.ofMinutes(1), new SimpleMeterRegistry());
+
+    @Test
+    void shouldQueueCallsOverTheLimitAndGrowWhileSaturated() {
+        var first = Sinks.<String>one();
+        var secondStarted = new AtomicBoolean();
+        var firstResult = limiter.run(first::asMono).toFuture();
+        var secondResult = limiter.run(() -> Mono.fromSupplier(() -> {
+            secondStarted.set(true);
+            return "second";
+        })).toFuture();
+
+        assertFalse(secondStarted.get());
+        assertEquals(1, limiter.getQueued());
+
+        first.tryEmitValue("first");
+
+        assertEquals("first", firstResult.join());
+        assertEquals("second", secondResult.join());
+        assertTrue(secondStarted.get());
+        assertEquals(2, limiter.getLimit());
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    void shouldOnlyGrowWhileSaturatedAndShrinkOnFailures() {
+        limiter.run(() -> Mono.just("ok")).block();
+        assertEquals(2, limiter.getLimit());
+        limiter.run(() -> Mono.just("ok")).block();
+        assertEquals(2, limiter.getLimit());
+
+        for (var i = 0; i < 20; i++) {
+            limiter.run(() -> Mono.error(new IllegalStateException("boom"))).onErrorResume(e -> Mono.empty()).block();
+        }
+        assertEquals(1, limiter.getLimit());
+        assertEquals(0, limiter.getInFlight());
+    }
+}
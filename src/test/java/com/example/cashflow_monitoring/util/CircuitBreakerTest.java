@@ -0,0 +1,51 @@
+package com.example.cashflow_monitoring.util;
+
+import com.example.cashflow_monitoring.exception.NotFoundException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CircuitBreakerTest {
+
+    @Test
+    void shouldServeFallbackWhileOpenAndCloseOnceProbeSucceeds() throws InterruptedException {
+        var calls = new AtomicInteger();
+        var circuitBreaker = new CircuitBreaker("test", 2, Duration.ofMillis(20), () -> Mono.just("up"),
+                new SimpleMeterRegistry());
+        Supplier<Mono<String>> failing = () -> Mono.defer(() -> {
+            calls.incrementAndGet();
+            return Mono.error(new IllegalStateException("down"));
+        });
+
+        assertEquals("stale", circuitBreaker.execute(failing, error -> Mono.just("stale")).block());
+        assertEquals("stale", circuitBreaker.execute(failing, error -> Mono.just("stale")).block());
+        assertTrue(circuitBreaker.isOpen());
+        assertEquals("stale", circuitBreaker.execute(failing, error -> Mono.just("stale")).block());
+        assertEquals(2, calls.get());
+
+        for (var i = 0; i < 100 && circuitBreaker.isOpen(); i++) {
+            Thread.sleep(10);
+        }
+        assertFalse(circuitBreaker.isOpen());
+        assertEquals("fresh", circuitBreaker.execute(() -> Mono.just("fresh"), error -> Mono.just("stale")).block());
+    }
+
+    @Test
+    void shouldPassClientErrorsThrough() {
+        var circuitBreaker = new CircuitBreaker("test", 1, Duration.ofMinutes(1), Mono::empty, new SimpleMeterRegistry());
+
+        assertThrows(NotFoundException.class, () -> circuitBreaker
+                .execute(() -> Mono.<String>error(new NotFoundException("missing")), error -> Mono.just("stale"))
+                .block());
+        assertFalse(circuitBreaker.isOpen());
+    }
+}
@@ -0,0 +1,32 @@
+package com.example.cashflow_monitoring.util;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class SingleFlightTest {
+
+    private final SingleFlight<String, String> singleFlight = new SingleFlight<>("test", new SimpleMeterRegistry());
+
+    @Test
+    void shouldShareCallInFlightAndReleaseKeyOnTermination() {
+        var calls = new AtomicInteger();
+        var result = Sinks.<String>one();
+        var first = singleFlight.execute("key", () -> result.asMono().doOnSubscribe(s -> calls.incrementAndGet()))
+                .toFuture();
+        var second = singleFlight.execute("key", () -> Mono.just("other")).toFuture();
+
+        result.tryEmitValue("value");
+
+        assertEquals("value", first.join());
+        assertEquals("value", second.join());
+        assertEquals(1, calls.get());
+        assertEquals(0.5, singleFlight.collapseRatio());
+        assertEquals("fresh", singleFlight.execute("key", () -> Mono.just("fresh")).block());
+    }
+}